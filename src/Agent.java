@@ -42,6 +42,16 @@ public abstract class Agent
      * @return the agent's name.
      */
     public abstract String getName();
+    /**
+     * Get ready to play a new game. The game's board has been cleared, or is about to be, and
+     * this agent may be asked to play either color's first move again.
+     * 
+     * You MAY override this method in your agent, to forget anything kept from the game
+     * before, such as a search tree or a transposition table. By default it does nothing.
+     */
+    public void newGame()
+    {
+    }
     /**
      * The way the agent's name is displayed in the game, with its color.
      * 
@@ -0,0 +1,36 @@
+/**
+ * Makes new agents, so that every game running at the same time can have agents of its own.
+ *
+ * Any agent constructor that takes a game and a color fits, for example:
+ *
+ *     AgentFactory factory = MyAgent::new;
+ *
+ * and a lambda can set up the rest of an agent's options:
+ *
+ *     AgentFactory factory = (game, iAmRed) -> new IterativeDeepeningAgent(game, iAmRed, 50);
+ */
+public interface AgentFactory
+{
+    /**
+     * Construct a new agent for a game.
+     *
+     * @param game the game the agent will be playing.
+     * @param iAmRed true if the agent is red, false if it is yellow.
+     * @return the new agent.
+     */
+    Agent create(Connect4Game game, boolean iAmRed);
+
+    /**
+     * Stop any threads an agent has running once it has finished playing. Agents that run
+     * threads of their own implement Shutdownable; any other agent is left as it is.
+     *
+     * @param agent the agent to clean up after; it shouldn't be asked to move again.
+     */
+    static void release(Agent agent)
+    {
+        if (agent instanceof Shutdownable)
+        {
+            ((Shutdownable) agent).shutdown();
+        }
+    }
+}
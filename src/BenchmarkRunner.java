@@ -0,0 +1,233 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Runs sets of benchmark positions through an engine and reports how fast it was, so that a
+ * change to the game core or the search can be measured against the numbers from before it.
+ *
+ * A set is a text file with one position per line: the moves that lead to it, as column digits
+ * counted from 1 (so "4453" means columns 3, 3, 4 and 2 in the game's numbering), then a space
+ * and the expected value in turns to spare (see Connect4Solver.turnsToSpare()). Blank lines and
+ * lines starting with # are skipped. Sets are usually split by how hard their positions are, and
+ * each set gets its own line in the report. Every result is checked against the expected value,
+ * as far as the engine can tell it, and the runner fails if any of them are wrong.
+ *
+ * The sets in the benchmarks folder (begin-baseline.txt, middle-baseline.txt and
+ * end-baseline.txt) are regression baselines. Their values were worked out by this project's own
+ * Connect4Solver, not taken from an independent source, so a clean run shows that the engines
+ * still agree with the solver as it was when the sets were made, not that either one is right.
+ *
+ * Run it from the command line:
+ *
+ *     java BenchmarkRunner engine set...
+ *
+ * where engine is "solve" for the exact value, "weak" for only who wins, or a number for a
+ * Connect4Search that deep, which is checked only where it proves a win or a loss.
+ */
+public class BenchmarkRunner
+{
+    public static final int COLUMNS = 7;    // the benchmark sets are for the standard board
+    public static final int ROWS = 6;
+
+    private String engine;                  // "solve", "weak", or a search depth
+    private Connect4Solver solver;          // used by the solve and weak engines
+    private TranspositionTable table;       // used by the search engine
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: java BenchmarkRunner solve|weak|depth set...");
+            System.exit(2);
+        }
+        BenchmarkRunner runner = new BenchmarkRunner(args[0]);
+        System.out.println(String.format("%-24s %6s %12s %14s %12s %7s %9s",
+            "set", "count", "mean time", "mean nodes", "nodes/s", "wrong", "unproven"));
+        int wrong = 0;
+        for (int i = 1; i < args.length; i++)
+        {
+            SetResult result = runner.run(args[i]);
+            System.out.println(result);
+            wrong += result.wrong;
+        }
+        if (wrong > 0)
+        {
+            System.out.println(wrong + " results did not match the expected values.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates a runner for an engine.
+     *
+     * @param engine "solve", "weak", or a search depth.
+     * @throws IllegalArgumentException if the engine is not one of those.
+     */
+    public BenchmarkRunner(String engine)
+    {
+        this.engine = engine;
+        if (engine.equals("solve") || engine.equals("weak"))
+        {
+            solver = new Connect4Solver();
+        }
+        else
+        {
+            try
+            {
+                if (Integer.parseInt(engine) < 1)
+                {
+                    throw new IllegalArgumentException("The search depth must be at least 1: " + engine);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+            }
+            table = new TranspositionTable(NegamaxAgent.DEFAULT_TABLE_ENTRIES);
+        }
+    }
+
+    /**
+     * Run every position of a set and total up the results.
+     *
+     * @param fileName the set to run.
+     * @return the totals for the set.
+     * @throws IOException if the set can't be read.
+     * @throws IllegalArgumentException if a line of the set is not a legal position and value.
+     */
+    public SetResult run(String fileName) throws IOException
+    {
+        SetResult result = new SetResult(Paths.get(fileName).getFileName().toString());
+        List<String> lines = Files.readAllLines(Paths.get(fileName));
+        for (int i = 0; i < lines.size(); i++)
+        {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 2)
+            {
+                throw new IllegalArgumentException(fileName + ":" + (i + 1) + ": expected moves and a value");
+            }
+            Connect4Position position = parsePosition(parts[0]);
+            if (position == null)
+            {
+                throw new IllegalArgumentException(fileName + ":" + (i + 1) + ": illegal moves " + parts[0]);
+            }
+            runPosition(position, Integer.parseInt(parts[1]), result);
+        }
+        return result;
+    }
+
+    /**
+     * Run one position, timing only the engine itself.
+     */
+    private void runPosition(Connect4Position position, int expected, SetResult result)
+    {
+        if (solver != null)
+        {
+            solver.getTranspositionTable().clear();     // every position starts cold
+            long nodes = solver.getNodeCount();
+            long start = System.nanoTime();
+            int value = engine.equals("weak") ? solver.solveWeak(position)
+                : Connect4Solver.turnsToSpare(position, solver.solve(position));
+            result.nanos += System.nanoTime() - start;
+            result.nodes += solver.getNodeCount() - nodes;
+            int want = engine.equals("weak") ? Integer.signum(expected) : expected;
+            if (value != want)
+            {
+                result.wrong++;
+            }
+        }
+        else
+        {
+            table.clear();
+            long start = System.nanoTime();
+            Connect4Search search = new Connect4Search(position, table);
+            search.search(Integer.parseInt(engine));
+            result.nanos += System.nanoTime() - start;
+            result.nodes += search.getNodeCount();
+            int score = search.getBestScore();
+            if (Math.abs(score) > Connect4Search.WIN_SCORE - COLUMNS * ROWS - 1)
+            {
+                // a proven result, so at least who wins must match
+                if (Integer.signum(score) != Integer.signum(expected))
+                {
+                    result.wrong++;
+                }
+            }
+            else
+            {
+                result.unproven++;
+            }
+        }
+        result.count++;
+    }
+
+    /**
+     * Play a string of column digits, counted from 1, on an empty board.
+     *
+     * @param moves the moves.
+     * @return the position, or null if a move is not a column, is into a full column, or comes
+     *         after the game is already won.
+     */
+    public static Connect4Position parsePosition(String moves)
+    {
+        Connect4Position position = new Connect4Position(COLUMNS, ROWS);
+        for (int i = 0; i < moves.length(); i++)
+        {
+            int column = moves.charAt(i) - '1';
+            if (column < 0 || column >= COLUMNS || !position.canPlay(column) || position.isWinningMove(column))
+            {
+                return null;
+            }
+            position.play(column);
+        }
+        return position;
+    }
+
+    /**
+     * The totals for one set.
+     */
+    public static class SetResult
+    {
+        private String name;    // the file name of the set
+        private int count;      // the number of positions run
+        private long nanos;     // the time the engine took over all of them
+        private long nodes;     // the positions the engine searched over all of them
+        private int wrong;      // results that did not match the expected value
+        private int unproven;   // search results that proved nothing to check
+
+        SetResult(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Get the number of results that did not match the expected value.
+         *
+         * @return the number of wrong results.
+         */
+        public int getWrongCount()
+        {
+            return wrong;
+        }
+
+        /**
+         * Formats the totals as one line of the report.
+         *
+         * @return the report line.
+         */
+        public String toString()
+        {
+            double seconds = nanos / 1e9;
+            return String.format("%-24s %6d %9.3f ms %14.0f %12.0f %7d %9d", name, count,
+                count == 0 ? 0 : seconds * 1000 / count, count == 0 ? 0 : (double) nodes / count,
+                seconds == 0 ? 0 : nodes / seconds, wrong, unproven);
+        }
+    }
+}
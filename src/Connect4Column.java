@@ -1,11 +1,16 @@
 /**
  * A single column in a Connect 4 game. A column stores a number of individual slots.
  * 
+ * A column does not hold any state of its own; it is a view of one column of a
+ * Connect4Game's bitboard.
+ * 
  * You should not modify this class, but you will need to use methods within it.
  */
 public class Connect4Column
 {
-    private Connect4Slot[] slots;
+    private Connect4Game game;      // the game this column is a view of
+    private int index;              // which column of the game this is
+    private Connect4Slot[] slots;   // views of the slots, created the first time they are asked for
     
     /**
      * Creates a new Connect4Column with a given height.
@@ -16,11 +21,7 @@ public class Connect4Column
      */
     public Connect4Column(int height)
     {
-        slots = new Connect4Slot[height];
-        for (int i = 0; i < height; i++)
-        {
-            slots[i] = new Connect4Slot();
-        }
+        this(new Connect4Game(1, height), 0);
     }
     /**
      * Creates a copy of the given Connect4Column.
@@ -31,12 +32,29 @@ public class Connect4Column
      */
     public Connect4Column(Connect4Column column)
     {
-        this.slots = new Connect4Slot[column.getRowCount()];
+        this(column.getRowCount());
         for (int i = 0; i < column.getRowCount(); i++)
         {
-            slots[i] = new Connect4Slot(column.getSlot(i));
+            if (column.getSlot(i).getIsFilled())
+            {
+                game.addToSlot(0, i, column.getSlot(i).getIsRed());
+            }
         }
     }
+    /**
+     * Creates a view of one column of a game.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the game the column belongs to.
+     * @param index the index of the column in the game.
+     */
+    Connect4Column(Connect4Game game, int index)
+    {
+        this.game = game;
+        this.index = index;
+        this.slots = new Connect4Slot[game.getRowCount()];
+    }
     /**
      * Returns a single Connect4Slot from the column.
      * 
@@ -49,6 +67,10 @@ public class Connect4Column
     {
         if (i < slots.length && i >= 0)
         {
+            if (slots[i] == null)
+            {
+                slots[i] = new Connect4Slot(game, index, i);
+            }
             return slots[i];
         }
         else
@@ -65,14 +87,30 @@ public class Connect4Column
      */
     public boolean getIsFull()
     {
-        for (Connect4Slot slot : slots)
-        {
-            if (!slot.getIsFilled())
-            {
-                return false;
-            }
-        }
-        return true;
+        return game.getColumnHeight(index) == slots.length;
+    }
+    /**
+     * Returns the number of tokens stacked in the column, counting up from the bottom.
+     * 
+     * Your agent may use this method.
+     * 
+     * @return the number of filled slots in the column.
+     */
+    public int getHeight()
+    {
+        return game.getColumnHeight(index);
+    }
+    /**
+     * Returns the index of the slot the next token dropped into this column would land in.
+     * Slot 0 is the top of the column, so this counts down as the column fills.
+     * 
+     * Your agent may use this method.
+     * 
+     * @return the index of the lowest empty slot; -1 if the column is full.
+     */
+    public int getNextFreeRow()
+    {
+        return slots.length - 1 - game.getColumnHeight(index);
     }
     /**
      * Returns the number of rows in the column.
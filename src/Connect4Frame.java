@@ -18,6 +18,7 @@ public class Connect4Frame extends JFrame
     JButton newGameButton, nextMoveButton, playToEndButton;   // the buttons controlling the game
     JLabel updateLabel; // the status label describing the events of the game
     Random r;   // a random number generator to randomly decide who plays first
+    char winner;    // 'R' or 'Y' once a player has won the current game, 'N' until then
 
     /**
      * Creates a new Connect4Frame with a given game and pair of players.
@@ -29,6 +30,23 @@ public class Connect4Frame extends JFrame
      * @param yellowPlayer the agent playing as the yellow tokens.
      */
     public Connect4Frame(Connect4Game game, Agent redPlayer, Agent yellowPlayer)
+    {
+        this(game, redPlayer, yellowPlayer, new Random().nextLong());
+    }
+
+    /**
+     * Creates a new Connect4Frame with a given game, pair of players and seed. The seed decides
+     * who plays first in each game and seeds the players (see Seedable), so the same seed plays
+     * the same games again.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the game itself.
+     * @param redPlayer the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     * @param seed the seed for the random number generator.
+     */
+    public Connect4Frame(Connect4Game game, Agent redPlayer, Agent yellowPlayer, long seed)
     {
         super();
 
@@ -36,7 +54,7 @@ public class Connect4Frame extends JFrame
         this.redPlayer = redPlayer;   // stores the red player
         this.yellowPlayer = yellowPlayer; //stores the yellow player
         gameActive = false;   // initially sets that no game is active
-        r = new Random();   // creates the random number generator
+        r = new Random(seed);   // creates the random number generator
 
         myPanel = new Connect4Panel(game);  // creates the panel for displaying the game
 
@@ -113,7 +131,8 @@ public class Connect4Frame extends JFrame
      */
     private void nextMove()
     {
-        Connect4Game oldBoard = new Connect4Game(myGame);   // store the old board for validation
+        long occupiedBefore = myGame.getOccupiedMask();  // store the old board's bitboards for validation
+        long redBefore = myGame.getRedMask();
         if(redPlayerturn) // if it's the red player's turn, run their move
         {
             redPlayer.move();
@@ -124,7 +143,7 @@ public class Connect4Frame extends JFrame
             yellowPlayer.move();
             alert(redPlayer.toString() + " plays next...");
         }
-        String validateResult = oldBoard.validate(myGame); // check and make sure this is a valid next move for this board
+        String validateResult = myGame.validateMove(occupiedBefore, redBefore); // check and make sure this is a valid next move for this board
         if(validateResult.length() > 0) // if there was a validation error, show it and cancel the game
         {
             alert(validateResult);  // show the error
@@ -132,16 +151,19 @@ public class Connect4Frame extends JFrame
             gameActive = false;
         }
         redPlayerturn = !redPlayerturn;   // switch whose turn it is
-        char won = myGame.gameWon();    // check if the game has been won
+        // after a valid move only the lines through the new token can have been completed, but an invalid one
+        // may have added several tokens, so then the whole board is checked
+        char won = validateResult.isEmpty() ? myGame.lastMoveWon() : myGame.gameWon();
+        winner = won;
         if (won != 'N') // if the game has been won...
         {
             disableButtons();   // disable the buttons
             gameActive = false;
-            if (myGame.gameWon() == 'R') // if red won, say so
+            if (won == 'R') // if red won, say so
             {
                 alert(redPlayer.toString() + " wins!");
             }
-            else if (myGame.gameWon() == 'Y') // if yellow won, say so
+            else if (won == 'Y') // if yellow won, say so
             {
                 alert(yellowPlayer.toString() + " wins!");
             }
@@ -165,6 +187,11 @@ public class Connect4Frame extends JFrame
         myGame.clearBoard();
         enableButtons();
         gameActive = true;
+        winner = 'N';
+        redPlayer.newGame();
+        yellowPlayer.newGame();
+        Seedable.seed(redPlayer, r.nextLong());     // seed the players from the frame's seed
+        Seedable.seed(yellowPlayer, r.nextLong());
         redPlayerturn = r.nextBoolean();
         if (redPlayerturn)
         {
@@ -192,15 +219,15 @@ public class Connect4Frame extends JFrame
         {
             nextMove();
         }
-        char won = myGame.gameWon();
+        char won = winner;
         if (won != 'N') // when it ends, announce how it ended: win or draw
         {
             disableButtons();
-            if (myGame.gameWon() == 'R')
+            if (won == 'R')
             {
                 alert(redPlayer.toString() + " wins!");
             }
-            else if (myGame.gameWon() == 'Y')
+            else if (won == 'Y')
             {
                 alert(yellowPlayer.toString() + " wins!");
             }
@@ -1,14 +1,25 @@
+import java.util.Arrays;
+
 /**
  * The data structure for a game of Connect 4.
  * 
- * Connect4Game is made of a certain number of Connect4Columns. Each column represents
- * a column from the current state of the game.
+ * The state of the board is kept in a Connect4Position, a packed bitboard. The Connect4Columns
+ * and Connect4Slots handed out by getColumn() are thin views over that bitboard: reading a slot
+ * reads a bit, and adding a token to a slot sets one.
+ * 
+ * Because the whole board has to fit in one long, numCols * (numRows + 1) can be at most 64:
+ * 7x6, 8x6, 9x6 and 8x7 boards work, but 8x8 does not. Connect4Position.fits() checks a size.
  * 
  * You should not modify this class, but you will need to use methods within it.
  */
 public class Connect4Game
 {
-    private Connect4Column[] columns;
+    private Connect4Position position;  // the authoritative state of the board
+    private Connect4Column[] columns;   // views of the columns, created the first time they are asked for
+    private int[] heights;              // the number of tokens stacked from the bottom of each column
+    private long highlighted;           // bitboard of the slots highlighted as part of a winning move
+    private int[] moves;                // every token added, in order, as column * rows + row
+    private int moveCount;              // the number of entries in moves
     private boolean redPlayedFirst;
     
     /**
@@ -18,14 +29,15 @@ public class Connect4Game
      * 
      * @param numCols The number of columns in the game board
      * @param numRows The number of rows in the game board
+     * @throws IllegalArgumentException if numCols * (numRows + 1) is more than 64; see
+     *                                  Connect4Position.fits()
      */
     public Connect4Game(int numCols, int numRows)
     {
-        columns=new Connect4Column[numCols];
-        for(int i = 0; i < numCols; i++)
-        {
-            columns[i] = new Connect4Column(numRows);
-        }
+        position = new Connect4Position(numCols, numRows);
+        columns = new Connect4Column[numCols];
+        heights = new int[numCols];
+        moves = new int[numCols * numRows];
     }
     /**
      * Copy an existing Connect 4 game.
@@ -36,11 +48,12 @@ public class Connect4Game
      */
     public Connect4Game(Connect4Game game)
     {
+        position = new Connect4Position(game.position);
         columns = new Connect4Column[game.getColumnCount()];
-        for (int i = 0; i < game.getColumnCount(); i++)
-        {
-            columns[i] = new Connect4Column(game.getColumn(i));
-        }
+        heights = game.heights.clone();
+        moves = game.moves.clone();
+        moveCount = game.moveCount;
+        redPlayedFirst = game.redPlayedFirst;
     }
     
     /**
@@ -55,6 +68,10 @@ public class Connect4Game
     {
         if (i < columns.length && i >= 0)
         {
+            if (columns[i] == null)
+            {
+                columns[i] = new Connect4Column(this, i);
+            }
             return columns[i];
         }
         else
@@ -72,7 +89,7 @@ public class Connect4Game
      */
     public int getColumnCount()
     {
-        return columns.length;
+        return position.getColumnCount();
     }
     /**
      * Get the total number of rows in the game board.
@@ -83,7 +100,18 @@ public class Connect4Game
      */
     public int getRowCount()
     {
-        return columns[0].getRowCount();
+        return position.getRowCount();
+    }
+    /**
+     * Get a copy of the bitboard behind this game. Changes to the copy do not affect the game.
+     * 
+     * Your agent may use this method for fast lookahead.
+     * 
+     * @return a copy of the current position.
+     */
+    public Connect4Position getPosition()
+    {
+        return new Connect4Position(position);
     }
     /**
      * Start a new game.
@@ -92,13 +120,11 @@ public class Connect4Game
      */
     public void clearBoard()
     {
-        for (int i = 0; i < getColumnCount(); i++)
-        {
-            for (int j = 0; j < getRowCount(); j++)
-            {
-                getColumn(i).getSlot(j).clear();
-            }
-        }
+        position.clear();
+        position.setRedToMove(redPlayedFirst);
+        highlighted = 0;
+        moveCount = 0;
+        Arrays.fill(heights, 0);
     }
     /**
      * Retrieve a matrix form of the board.
@@ -114,9 +140,9 @@ public class Connect4Game
         {
             for(int j = 0; j < getRowCount(); j++) 
             {
-                if (getColumn(i).getSlot(j).getIsFilled())
+                if (position.isFilled(i, j))
                 {
-                    if (getColumn(i).getSlot(j).getIsRed())
+                    if (position.isRed(i, j))
                     {
                         board[j][i] = 'R';
                     }
@@ -142,86 +168,177 @@ public class Connect4Game
      */
     public boolean boardFull()
     {
-        char[][] board = getBoardMatrix();
-        for (int i = 0; i < getColumnCount(); i++)
+        return position.getMoveCount() == getColumnCount() * getRowCount();
+    }
+    /**
+     * Check whether a token can be dropped into a column.
+     * 
+     * Your agent may use this method.
+     * 
+     * @param column the column to check.
+     * @return true if the column exists and is not full, false otherwise.
+     */
+    public boolean canPlay(int column)
+    {
+        return column >= 0 && column < getColumnCount() && heights[column] < getRowCount();
+    }
+    /**
+     * Drop a token for the player whose turn it is into a column.
+     * 
+     * Together with undo(), this lets your agent look ahead on the real board without copying
+     * it. Make sure every play() is undone before your move() method places its real token.
+     * 
+     * @param column the column to drop the token into.
+     * @return true if the token was dropped; false if the column is full or does not exist.
+     */
+    public boolean play(int column)
+    {
+        if (!canPlay(column))
         {
-            for (int j = 0; j < getRowCount(); j++)
-            {
-                if (board[j][i] == 'B')
-                {
-                    return false;
-                }
-            }
+            return false;
         }
+        addToSlot(column, getRowCount() - 1 - heights[column], position.getRedToMove());
         return true;
     }
+    /**
+     * Take back the last token added to the board, whether it was added with play() or
+     * directly through a Connect4Slot.
+     * 
+     * Your agent may use this method.
+     * 
+     * @return true if a token was taken back; false if the board is empty.
+     */
+    public boolean undo()
+    {
+        if (moveCount == 0)
+        {
+            return false;
+        }
+        int move = moves[moveCount - 1];
+        clearSlot(move / getRowCount(), move % getRowCount());
+        return true;
+    }
+    /**
+     * Get the number of tokens on the board.
+     * 
+     * Your agent may use this method.
+     * 
+     * @return the number of tokens that have been added and not taken back.
+     */
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+    /**
+     * Check whether red is the player to move, based on who played first and the tokens added
+     * since then.
+     * 
+     * Your agent may use this method.
+     * 
+     * @return true if red moves next, false if yellow moves next.
+     */
+    public boolean getRedToMove()
+    {
+        return position.getRedToMove();
+    }
+    /**
+     * Get a 64-bit hash of the board and the player to move. It is kept up to date in constant
+     * time on every move and undo, so it is cheap enough to use as the key of a hash table.
+     * 
+     * Your agent may use this method.
+     * 
+     * @return the Zobrist hash of the current position.
+     */
+    public long getPositionKey()
+    {
+        return position.getZobristKey();
+    }
+    /**
+     * Get a key that identifies the current position exactly, as seen by the player to move.
+     * See Connect4Position.getExactKey().
+     * 
+     * Your agent may use this method.
+     * 
+     * @return the exact key of the current position.
+     */
+    public long getExactKey()
+    {
+        return position.getExactKey();
+    }
+    /**
+     * Get the number of tokens stacked from the bottom of a column.
+     * 
+     * Your agent may use this method, though Connect4Column.getHeight() is usually easier.
+     * 
+     * @param column the column to check.
+     * @return the number of filled slots counting up from the bottom of the column.
+     */
+    public int getColumnHeight(int column)
+    {
+        return heights[column];
+    }
     /**
      * Check if the game has been won.
      * 
+     * The bitboard answers whether either player has four in a row with a few shifts, so the
+     * winning lines are only looked up when there is one to highlight.
+     * 
      * Your agent will not need to use this method.
      * 
      * @return 'R' if red won, 'Y' if yellow won, 'N' if the game has not been won.
      */
     public char gameWon()
     {
-        char[][] board = getBoardMatrix();
+        long red = position.getRedMask();
+        if (!position.hasFourInARow(red) && !position.hasFourInARow(red ^ position.getOccupiedMask()))
+        {
+            return 'N';
+        }
         
-        for (int i = 0; i < getColumnCount(); i++)
+        // the lines are numbered in the order the board used to be scanned, so the same line is highlighted
+        WinningLines lines = WinningLines.forSize(getColumnCount(), getRowCount());
+        long yellow = red ^ position.getOccupiedMask();
+        for (int line = 0; line < lines.getLineCount(); line++)
         {
-            for (int j = 0; j < getRowCount(); j++)
+            long slots = lines.getLineMask(line);
+            if ((red & slots) == slots || (yellow & slots) == slots)
             {
-                if(board[j][i] != 'B')
-                {
-                    if (j + 3 < getRowCount())
-                    {
-                        if(board[j][i] == board[j + 1][i] && board[j][i] == board[j + 2][i] && board[j][i] == board[j + 3][i])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i);
-                            highlightSlot(j + 2, i);
-                            highlightSlot(j + 3, i);
-                            return board[j][i];
-                        }
-                    }
-                    if (i + 3 < getColumnCount())
-                    {
-                        if (board[j][i] == board[j][i + 1] && board[j][i] == board[j][i + 2] && board[j][i] == board[j][i + 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j, i + 1);
-                            highlightSlot(j, i + 2);
-                            highlightSlot(j, i + 3);
-                            return board[j][i];
-                        }
-                    }
-                    if (i + 3 < getColumnCount() && j + 3 < getRowCount())
-                    {
-                        if(board[j][i] == board[j + 1][i + 1] && board[j][i] == board[j + 2][i + 2] && board[j][i] == board[j + 3][i + 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i + 1);
-                            highlightSlot(j + 2, i + 2);
-                            highlightSlot(j + 3,i + 3);
-                            return board[j][i];
-                        }
-                    }
-                    if (i > 2 && j + 3 < getRowCount())
-                    {
-                        if (board[j][i] == board[j + 1][i - 1] && board[j][i] == board[j + 2][i - 2] && board[j][i] == board[j + 3][i - 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i - 1);
-                            highlightSlot(j + 2, i - 2);
-                            highlightSlot(j + 3, i - 3);
-                            return board[j][i];
-                        }
-                    }
-                }
+                highlighted |= slots;
+                return (red & slots) == slots ? 'R' : 'Y';
             }
         }
 
         return 'N';
     }
+    /**
+     * Check if the last token added to the board won the game.
+     * 
+     * Only the four lines through the last token are examined, so this takes constant time
+     * and does not allocate. As long as gameWon() returned 'N' before that token was added,
+     * and it was the only token added since, this gives the same answer as gameWon(); after
+     * an invalid move that added several tokens, use gameWon().
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return 'R' if red won, 'Y' if yellow won, 'N' if the last move did not win the game.
+     */
+    public char lastMoveWon()
+    {
+        if (moveCount == 0)
+        {
+            return 'N';
+        }
+        long lastMove = position.slotBit(moves[moveCount - 1] / getRowCount(), moves[moveCount - 1] % getRowCount());
+        long red = position.getRedMask();
+        boolean lastWasRed = (red & lastMove) != 0;
+        long line = position.winningLineThrough(lastWasRed ? red : red ^ position.getOccupiedMask(), lastMove);
+        if (line == 0)
+        {
+            return 'N';
+        }
+        highlighted |= line;
+        return lastWasRed ? 'R' : 'Y';
+    }
     /**
      * Validate that the given board is a valid next state following this board.
      * 
@@ -231,40 +348,47 @@ public class Connect4Game
      */
     public String validate(Connect4Game after)
     {
-        int filledSlots = 0, redSlots = 0, yellowSlots = 0;
-        for (int i = 0; i < getColumnCount(); i++)
+        return after.validateMove(position.getOccupiedMask(), position.getRedMask());
+    }
+    /**
+     * Validate that this board is a valid next state following an earlier board, given only
+     * the earlier board's bitboards from getOccupiedMask() and getRedMask(). Because the
+     * earlier board is just two longs, the referee does not need to copy the game before each
+     * move, and every check is a handful of bit operations.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param occupiedBefore the occupied bitboard before the move.
+     * @param redBefore the red bitboard before the move.
+     * @return an error message, or the empty string if exactly one valid token was added.
+     */
+    public String validateMove(long occupiedBefore, long redBefore)
+    {
+        long occupied = position.getOccupiedMask();
+        long red = position.getRedMask();
+        long removed = occupiedBefore & ~occupied;
+        long changed = occupiedBefore & occupied & (redBefore ^ red);
+        long floating = occupied & ~(occupied << 1) & ~position.getBottomMask();
+        long errors = removed | changed | floating;
+        if (errors != 0)
         {
-            for (int j = 0; j < getRowCount(); j++)
+            // report the first error going across the columns and down each column
+            int i = Long.numberOfTrailingZeros(errors) / (getRowCount() + 1);
+            long bit = Long.highestOneBit(errors & position.columnMask(i));
+            int j = getRowCount() - 1 - (Long.numberOfTrailingZeros(bit) - i * (getRowCount() + 1));
+            if ((removed & bit) != 0)
             {
-                if (after.getColumn(i).getSlot(j).getIsFilled())
-                {
-                    if (after.getColumn(i).getSlot(j).getIsRed())
-                    {
-                        redSlots++;
-                    }
-                    else
-                    {
-                        yellowSlots++;
-                    }
-                }
-                if (!getColumn(i).getSlot(j).getIsFilled() && after.getColumn(i).getSlot(j).getIsFilled())
-                {
-                    filledSlots++;
-                }
-                if (getColumn(i).getSlot(j).getIsFilled() && !after.getColumn(i).getSlot(j).getIsFilled())
-                {
-                    return "Invalid move: a token was removed at column " + i + ", row " + j + ".";
-                }
-                if (getColumn(i).getSlot(j).getIsFilled() && (getColumn(i).getSlot(j).getIsRed()!=after.getColumn(i).getSlot(j).getIsRed()))
-                {
-                    return "Invalid move: a token was changed at column " + i + ", row " + j + ".";
-                }
-                if (j < getRowCount() - 1 && after.getColumn(i).getSlot(j).getIsFilled() && !after.getColumn(i).getSlot(j+1).getIsFilled())
-                {
-                    return "Invalid move: a token in column " + i + " was not placed in the highest open slot.";
-                }
+                return "Invalid move: a token was removed at column " + i + ", row " + j + ".";
             }
+            if ((changed & bit) != 0)
+            {
+                return "Invalid move: a token was changed at column " + i + ", row " + j + ".";
+            }
+            return "Invalid move: a token in column " + i + " was not placed in the highest open slot.";
         }
+        int filledSlots = Long.bitCount(occupied & ~occupiedBefore);
+        int redSlots = Long.bitCount(red);
+        int yellowSlots = Long.bitCount(occupied) - redSlots;
         if (filledSlots > 1)
         {
             return "Invalid move: more than one token was placed.";
@@ -273,7 +397,7 @@ public class Connect4Game
         {
             return "Invalid move: no move was made.";
         }
-        if (after.getRedPlayedFirst())
+        if (getRedPlayedFirst())
         {
             if (redSlots < yellowSlots)
             {
@@ -297,6 +421,28 @@ public class Connect4Game
         }
         return "";
     }
+    /**
+     * Get the bitboard of every occupied slot, for use with validateMove().
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the occupied bitboard of the current position.
+     */
+    public long getOccupiedMask()
+    {
+        return position.getOccupiedMask();
+    }
+    /**
+     * Get the bitboard of every red token, for use with validateMove().
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the red bitboard of the current position.
+     */
+    public long getRedMask()
+    {
+        return position.getRedMask();
+    }
     /**
      * Highlight the winning moves in a game.
      * 
@@ -332,5 +478,97 @@ public class Connect4Game
     public void setRedPlayedFirst(boolean redPlayedFirst)
     {
         this.redPlayedFirst = redPlayedFirst;
+        position.setRedToMove(redPlayedFirst ^ (position.getMoveCount() % 2 == 1));
+    }
+    
+    /**
+     * Check if a slot is filled. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot
+     * @param row the row of the slot
+     * @return true if the slot is filled, false otherwise
+     */
+    boolean isSlotFilled(int column, int row)
+    {
+        return position.isFilled(column, row);
+    }
+    
+    /**
+     * Check if a slot holds a red token. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot
+     * @param row the row of the slot
+     * @return true if the slot holds a red token, false if it is empty or yellow
+     */
+    boolean isSlotRed(int column, int row)
+    {
+        return position.isRed(column, row);
+    }
+    
+    /**
+     * Check if a slot is highlighted. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot
+     * @param row the row of the slot
+     * @return true if the slot is highlighted, false otherwise
+     */
+    boolean isSlotHighlighted(int column, int row)
+    {
+        return (highlighted & position.slotBit(column, row)) != 0;
+    }
+    
+    /**
+     * Add a token to a slot if it is empty. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot
+     * @param row the row of the slot
+     * @param red true to add a red token, false to add a yellow one
+     */
+    void addToSlot(int column, int row, boolean red)
+    {
+        if (!position.isFilled(column, row))
+        {
+            position.addToken(column, row, red);
+            moves[moveCount++] = column * getRowCount() + row;
+            if (row == getRowCount() - 1 - heights[column])
+            {
+                heights[column] = position.getColumnHeight(column);
+            }
+        }
+    }
+    
+    /**
+     * Highlight a slot. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot
+     * @param row the row of the slot
+     */
+    void setSlotHighlighted(int column, int row)
+    {
+        highlighted |= position.slotBit(column, row);
+    }
+    
+    /**
+     * Empty a slot and remove its highlight. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot
+     * @param row the row of the slot
+     */
+    void clearSlot(int column, int row)
+    {
+        if (position.isFilled(column, row))
+        {
+            int move = column * getRowCount() + row;
+            int i = moveCount - 1;
+            while (moves[i] != move)
+            {
+                i--;
+            }
+            System.arraycopy(moves, i + 1, moves, i, moveCount - 1 - i);
+            moveCount--;
+        }
+        position.removeToken(column, row);
+        highlighted &= ~position.slotBit(column, row);
+        heights[column] = Math.min(heights[column], getRowCount() - 1 - row);
     }
 }
@@ -0,0 +1,612 @@
+import java.util.SplittableRandom;
+
+/**
+ * A packed bitboard form of a Connect 4 board.
+ *
+ * The board is stored in two longs: one holding the tokens of the player to move, and one
+ * holding every occupied slot. Each column takes (rows + 1) bits, lowest bit at the bottom of
+ * the column, and the extra bit on top of each column is a sentinel row that is always empty.
+ * The sentinel keeps shifts from one column from spilling into the next, which is what lets
+ * whole-board questions such as "is there four in a row" be answered with a few shifts.
+ *
+ * Because everything has to fit in one long, boards are limited to numCols * (numRows + 1) <= 64
+ * bits, which still allows 7x6, 8x6, 9x6 and 8x7 boards.
+ *
+ * Rows are numbered the same way as in Connect4Game: row 0 is the top of the board.
+ *
+ * Your agent may use this class directly for fast lookahead.
+ */
+public class Connect4Position
+{
+    private static final long[] ZOBRIST = new long[128];   // random keys for a red or yellow token on each bit
+    private static final long ZOBRIST_RED_TO_MOVE;          // random key mixed in while red is to move
+
+    static
+    {
+        // a fixed seed keeps keys the same from run to run, so they can be stored in files
+        SplittableRandom random = new SplittableRandom(0x436F6E6E65637434L);
+        for (int i = 0; i < ZOBRIST.length; i++)
+        {
+            ZOBRIST[i] = random.nextLong();
+        }
+        ZOBRIST_RED_TO_MOVE = random.nextLong();
+    }
+
+    private final int columnCount;   // the number of columns on the board
+    private final int rowCount;      // the number of playable rows in each column
+    private final int stride;        // bits per column, including the sentinel row
+    private final long bottomMask;   // one bit at the bottom of every column
+    private final long boardMask;    // every playable slot on the board
+
+    private long current;            // tokens of the player to move
+    private long mask;               // every occupied slot
+    private int moveCount;           // the number of tokens on the board
+    private boolean redToMove;       // whether the tokens in current are red
+    private long zobristKey;         // hash of the tokens and the player to move, kept up to date on every change
+
+    /**
+     * Check whether a board of the given size fits in a bitboard: numCols * (numRows + 1) must
+     * be at most 64.
+     *
+     * @param numCols The number of columns in the game board
+     * @param numRows The number of rows in the game board
+     * @return true if a position, and so a Connect4Game, of this size can be created.
+     */
+    public static boolean fits(int numCols, int numRows)
+    {
+        return numCols >= 1 && numRows >= 1 && numCols * (numRows + 1) <= 64;
+    }
+
+    /**
+     * Creates a new, empty position with the given size.
+     *
+     * @param numCols The number of columns in the game board
+     * @param numRows The number of rows in the game board
+     * @throws IllegalArgumentException if the board does not fit in a 64-bit bitboard
+     */
+    public Connect4Position(int numCols, int numRows)
+    {
+        if (!fits(numCols, numRows))
+        {
+            throw new IllegalArgumentException("A " + numCols + "x" + numRows + " board does not fit in a 64-bit bitboard.");
+        }
+        this.columnCount = numCols;
+        this.rowCount = numRows;
+        this.stride = numRows + 1;
+        long bottom = 0;
+        for (int i = 0; i < numCols; i++)
+        {
+            bottom |= 1L << (i * stride);
+        }
+        this.bottomMask = bottom;
+        this.boardMask = bottom * ((1L << numRows) - 1);
+    }
+
+    /**
+     * Copies an existing position. This copies only a handful of primitive fields.
+     *
+     * @param position the position to copy.
+     */
+    public Connect4Position(Connect4Position position)
+    {
+        this.columnCount = position.columnCount;
+        this.rowCount = position.rowCount;
+        this.stride = position.stride;
+        this.bottomMask = position.bottomMask;
+        this.boardMask = position.boardMask;
+        this.current = position.current;
+        this.mask = position.mask;
+        this.moveCount = position.moveCount;
+        this.redToMove = position.redToMove;
+        this.zobristKey = position.zobristKey;
+    }
+
+    /**
+     * Make this position the same as another position of the same size, without allocating.
+     *
+     * @param position the position to copy.
+     * @throws IllegalArgumentException if the positions are different sizes
+     */
+    public void copyFrom(Connect4Position position)
+    {
+        if (position.columnCount != columnCount || position.rowCount != rowCount)
+        {
+            throw new IllegalArgumentException("Cannot copy a " + position.columnCount + "x" + position.rowCount
+                + " position into a " + columnCount + "x" + rowCount + " position.");
+        }
+        this.current = position.current;
+        this.mask = position.mask;
+        this.moveCount = position.moveCount;
+        this.redToMove = position.redToMove;
+        this.zobristKey = position.zobristKey;
+    }
+
+    /**
+     * Get the total number of columns in the board.
+     *
+     * @return the number of columns in the board.
+     */
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Get the total number of rows in the board.
+     *
+     * @return the number of rows in the board.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Get the number of tokens on the board.
+     *
+     * @return the number of tokens on the board.
+     */
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+
+    /**
+     * Check whether red is the player to move.
+     *
+     * @return true if red moves next, false if yellow moves next.
+     */
+    public boolean getRedToMove()
+    {
+        return redToMove;
+    }
+
+    /**
+     * Set which player moves next. The tokens on the board are not changed.
+     *
+     * @param redToMove true if red moves next, false if yellow moves next.
+     */
+    public void setRedToMove(boolean redToMove)
+    {
+        if (this.redToMove != redToMove)
+        {
+            current ^= mask;
+            this.redToMove = redToMove;
+            zobristKey ^= ZOBRIST_RED_TO_MOVE;
+        }
+    }
+
+    /**
+     * Get the bitboard of the player to move.
+     *
+     * @return a bitboard of the tokens of the player to move.
+     */
+    public long getCurrentMask()
+    {
+        return current;
+    }
+
+    /**
+     * Get the bitboard of every occupied slot.
+     *
+     * @return a bitboard of every token on the board.
+     */
+    public long getOccupiedMask()
+    {
+        return mask;
+    }
+
+    /**
+     * Get the bitboard of the red tokens.
+     *
+     * @return a bitboard of every red token on the board.
+     */
+    public long getRedMask()
+    {
+        return redToMove ? current : current ^ mask;
+    }
+
+    /**
+     * Get a 64-bit hash of the position, including which player is to move. The hash is
+     * updated in constant time whenever a token is added or removed, and two equal positions
+     * always have the same hash, even on different runs. Different positions can share a hash,
+     * but it is very unlikely.
+     *
+     * @return the Zobrist hash of the position.
+     */
+    public long getZobristKey()
+    {
+        return zobristKey;
+    }
+
+    /**
+     * Get a key that identifies the position exactly, as seen by the player to move. The key
+     * is the current-player bitboard plus the occupied bitboard plus one bit at the bottom of
+     * every column, which marks the height of each column with one extra bit; this always fits
+     * in a long because of the sentinel row.
+     *
+     * Two positions that are the same except that the colors of every token and the player to
+     * move are swapped have the same key, since they play out exactly the same way. The key is
+     * only exact when every column is stacked from the bottom, as it is for any legal game.
+     *
+     * @return the exact key of the position.
+     */
+    public long getExactKey()
+    {
+        return current + mask + bottomMask;
+    }
+
+    /**
+     * Get the bitboard with every playable slot set.
+     *
+     * @return a bitboard of the whole board.
+     */
+    public long getBoardMask()
+    {
+        return boardMask;
+    }
+
+    /**
+     * Get the bitboard with the bottom slot of every column set.
+     *
+     * @return a bitboard of the bottom row.
+     */
+    public long getBottomMask()
+    {
+        return bottomMask;
+    }
+
+    /**
+     * Get the bit for a single slot.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot, where row 0 is the top of the board.
+     * @return the bitboard with only that slot set.
+     */
+    public long slotBit(int column, int row)
+    {
+        return 1L << (column * stride + rowCount - 1 - row);
+    }
+
+    /**
+     * Get the bitboard of every playable slot in a column.
+     *
+     * @param column the column.
+     * @return the bitboard of that column.
+     */
+    public long columnMask(int column)
+    {
+        return ((1L << rowCount) - 1) << (column * stride);
+    }
+
+    /**
+     * Get the bitboard of the top slot in a column.
+     *
+     * @param column the column.
+     * @return the bitboard with only the top slot of the column set.
+     */
+    public long topMask(int column)
+    {
+        return 1L << (rowCount - 1 + column * stride);
+    }
+
+    /**
+     * Get the bitboard of the bottom slot in a column.
+     *
+     * @param column the column.
+     * @return the bitboard with only the bottom slot of the column set.
+     */
+    public long bottomMask(int column)
+    {
+        return 1L << (column * stride);
+    }
+
+    /**
+     * Check if a slot holds a token.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot, where row 0 is the top of the board.
+     * @return true if the slot is filled, false otherwise.
+     */
+    public boolean isFilled(int column, int row)
+    {
+        return (mask & slotBit(column, row)) != 0;
+    }
+
+    /**
+     * Check if a slot holds a red token.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot, where row 0 is the top of the board.
+     * @return true if the slot holds a red token, false if it is empty or yellow.
+     */
+    public boolean isRed(int column, int row)
+    {
+        return (getRedMask() & slotBit(column, row)) != 0;
+    }
+
+    /**
+     * Get the number of tokens stacked from the bottom of a column.
+     *
+     * @param column the column.
+     * @return the number of filled slots counting up from the bottom of the column.
+     */
+    public int getColumnHeight(int column)
+    {
+        return Long.numberOfTrailingZeros(~(mask >>> (column * stride)));
+    }
+
+    /**
+     * Check whether a token can be dropped in a column.
+     *
+     * @param column the column.
+     * @return true if the column exists and its top slot is empty.
+     */
+    public boolean canPlay(int column)
+    {
+        return column >= 0 && column < columnCount && (mask & topMask(column)) == 0;
+    }
+
+    /**
+     * Drop a token for the player to move into a column, then pass the turn. The column
+     * must be playable; see canPlay().
+     *
+     * @param column the column to play.
+     */
+    public void play(int column)
+    {
+        long bit = (mask + bottomMask(column)) & columnMask(column);
+        zobristKey ^= zobrist(bit, redToMove) ^ ZOBRIST_RED_TO_MOVE;
+        current ^= mask;
+        mask |= mask + bottomMask(column);
+        moveCount++;
+        redToMove = !redToMove;
+    }
+
+    /**
+     * Remove the top token of a column and give the turn back. This is the exact inverse of
+     * play() for the same column.
+     *
+     * @param column the column that was last played.
+     */
+    public void undo(int column)
+    {
+        long bit = Long.highestOneBit(mask & columnMask(column));
+        zobristKey ^= zobrist(bit, !redToMove) ^ ZOBRIST_RED_TO_MOVE;
+        mask &= ~bit;
+        current ^= mask;
+        moveCount--;
+        redToMove = !redToMove;
+    }
+
+    /**
+     * Place a token of the given color into a slot, if it is empty. Unlike play(), the slot
+     * does not have to be the lowest open slot and the color does not have to be the player
+     * to move; this mirrors what Connect4Slot allows. The turn only passes when the player
+     * to move placed the token.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot, where row 0 is the top of the board.
+     * @param red true to place a red token, false to place a yellow one.
+     */
+    public void addToken(int column, int row, boolean red)
+    {
+        long bit = slotBit(column, row);
+        if ((mask & bit) != 0)
+        {
+            return;
+        }
+        zobristKey ^= zobrist(bit, red);
+        if (red == redToMove)
+        {
+            current ^= mask;
+            mask |= bit;
+            redToMove = !redToMove;
+            zobristKey ^= ZOBRIST_RED_TO_MOVE;
+        }
+        else
+        {
+            mask |= bit;
+        }
+        moveCount++;
+    }
+
+    /**
+     * Remove the token from a slot, if there is one. This is the inverse of addToken().
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot, where row 0 is the top of the board.
+     */
+    public void removeToken(int column, int row)
+    {
+        long bit = slotBit(column, row);
+        if ((mask & bit) == 0)
+        {
+            return;
+        }
+        zobristKey ^= zobrist(bit, (getRedMask() & bit) != 0);
+        if ((current & bit) == 0)
+        {
+            mask &= ~bit;
+            current ^= mask;
+            redToMove = !redToMove;
+            zobristKey ^= ZOBRIST_RED_TO_MOVE;
+        }
+        else
+        {
+            current &= ~bit;
+            mask &= ~bit;
+        }
+        moveCount--;
+    }
+
+    /**
+     * Remove every token from the board. The player to move is not changed.
+     */
+    public void clear()
+    {
+        current = 0;
+        mask = 0;
+        moveCount = 0;
+        zobristKey = redToMove ? ZOBRIST_RED_TO_MOVE : 0;
+    }
+
+    /**
+     * Look up the Zobrist key for one token.
+     *
+     * @param bit the bitboard with only the token's slot set.
+     * @param red true for a red token, false for a yellow one.
+     * @return the random key for that token.
+     */
+    private static long zobrist(long bit, boolean red)
+    {
+        return ZOBRIST[Long.numberOfTrailingZeros(bit) * 2 + (red ? 1 : 0)];
+    }
+
+    /**
+     * Check if every slot on the board is filled.
+     *
+     * @return true if the board is full, false otherwise.
+     */
+    public boolean isFull()
+    {
+        return mask == boardMask;
+    }
+
+    /**
+     * Get the bitboard of the slots where the next token of each column would land.
+     *
+     * @return a bitboard with one bit for every column that is not full.
+     */
+    public long possibleMoves()
+    {
+        return (mask + bottomMask) & boardMask;
+    }
+
+    /**
+     * Find every empty slot that would complete four in a row for the given tokens, whether
+     * or not a token can be dropped there yet.
+     *
+     * @param tokens the bitboard of one player's tokens.
+     * @return the bitboard of empty slots that would win for that player.
+     */
+    public long winningSlots(long tokens)
+    {
+        return winningSlots(tokens, mask);
+    }
+
+    /**
+     * Find every empty slot that would complete four in a row for the given tokens on a board
+     * with the given slots occupied, such as the board after a move that has not been played.
+     *
+     * @param tokens the bitboard of one player's tokens.
+     * @param occupied the bitboard of every occupied slot.
+     * @return the bitboard of empty slots that would win for that player.
+     */
+    public long winningSlots(long tokens, long occupied)
+    {
+        // vertical
+        long slots = (tokens << 1) & (tokens << 2) & (tokens << 3);
+        for (int shift = stride - 1; columnCount >= 4 && shift <= stride + 1; shift++)
+        {
+            long pair = (tokens << shift) & (tokens << (2 * shift));
+            slots |= pair & (tokens << (3 * shift));
+            slots |= pair & (tokens >>> shift);
+            pair = (tokens >>> shift) & (tokens >>> (2 * shift));
+            slots |= pair & (tokens << shift);
+            slots |= pair & (tokens >>> (3 * shift));
+        }
+        return slots & (boardMask ^ occupied);
+    }
+
+    /**
+     * Check whether the player to move would win by dropping a token in a column.
+     *
+     * @param column a playable column.
+     * @return true if playing the column completes four in a row.
+     */
+    public boolean isWinningMove(int column)
+    {
+        return (winningSlots(current) & possibleMoves() & columnMask(column)) != 0;
+    }
+
+    /**
+     * Check whether the player to move has any move that wins immediately.
+     *
+     * @return true if some playable column completes four in a row.
+     */
+    public boolean canWinNext()
+    {
+        return (winningSlots(current) & possibleMoves()) != 0;
+    }
+
+    /**
+     * Find a winning line through a single token, looking only at the four lines that pass
+     * through it. This takes constant time no matter how big the board is.
+     *
+     * @param tokens the bitboard of the player who owns the token.
+     * @param bit the bit of the token to check, usually the last token dropped.
+     * @return the bitboard of the run of four or more through the token, or 0 if there is none.
+     */
+    public long winningLineThrough(long tokens, long bit)
+    {
+        int directions = columnCount < 4 ? 1 : 4;  // only vertical lines fit on narrow boards
+        for (int direction = 0; direction < directions; direction++)
+        {
+            int shift = direction == 0 ? 1 : stride - 2 + direction;    // vertical, then the two diagonals and horizontal
+            long line = bit;
+            long next = bit << shift;
+            for (int k = 0; k < 3 && (next & tokens) != 0; k++)
+            {
+                line |= next;
+                next <<= shift;
+            }
+            next = bit >>> shift;
+            for (int k = 0; k < 3 && (next & tokens) != 0; k++)
+            {
+                line |= next;
+                next >>>= shift;
+            }
+            if (Long.bitCount(line) >= 4)
+            {
+                return line;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Check whether a bitboard contains four tokens in a row in any direction.
+     *
+     * @param tokens the bitboard to check.
+     * @return true if there is at least one four in a row.
+     */
+    public boolean hasFourInARow(long tokens)
+    {
+        // vertical
+        long m = tokens & (tokens >>> 1);
+        if ((m & (m >>> 2)) != 0)
+        {
+            return true;
+        }
+        if (columnCount < 4)
+        {
+            return false;   // no other lines fit, and the shifts below would wrap around on tall boards
+        }
+        // horizontal
+        m = tokens & (tokens >>> stride);
+        if ((m & (m >>> (2 * stride))) != 0)
+        {
+            return true;
+        }
+        // diagonal, going down to the right
+        m = tokens & (tokens >>> (stride - 1));
+        if ((m & (m >>> (2 * (stride - 1)))) != 0)
+        {
+            return true;
+        }
+        // diagonal, going up to the right
+        m = tokens & (tokens >>> (stride + 1));
+        return (m & (m >>> (2 * (stride + 1)))) != 0;
+    }
+}
@@ -0,0 +1,390 @@
+/**
+ * A negamax search with alpha-beta pruning over a Connect4Position.
+ *
+ * The search plays and undoes moves on its own copy of the position, so it never touches the
+ * Connect4Game or its Connect4Slots and does not allocate while it searches. Scores are always
+ * from the point of view of the player to move: a win is worth WIN_SCORE minus the number of
+ * tokens on the board when the winning token is dropped, so faster wins score higher, a draw
+ * is worth 0, and anything in between comes from evaluate().
+ *
+ * If a TranspositionTable is given, positions reached again through a different move order
+ * are answered from the table, and the best move stored for a position is tried first.
+ *
+ * searchUntil() runs an iterative-deepening search: depth 1, then 2, then 3 and so on until a
+ * deadline passes, returning the best move of the deepest search that finished. Another
+ * thread may end it early with stop().
+ */
+public class Connect4Search
+{
+    public static final int WIN_SCORE = 1000000;    // the score of a win on an empty board
+    public static final int INFINITY = 2 * WIN_SCORE;  // a score larger than any real score
+
+    protected Connect4Position position;    // the position being searched, changed in place
+    protected int[] columnOrder;            // columns ordered from the center outwards
+    protected long nodeCount;               // positions visited since the search was created
+    protected TranspositionTable table;     // cached results, or null to search without one
+    protected long deadline;                // System.nanoTime() at which to give up, if timed
+    protected boolean timed;                // whether the deadline applies
+    protected boolean aborted;              // whether the running search ran out of time
+    protected volatile boolean stopRequested;  // set by another thread to end searchUntil() early
+    protected PatternEvaluator evaluator;   // the incremental line evaluation, or null to count threats instead
+    private int bestScore;                  // the score of the move returned by the last search
+    private int completedDepth;             // the depth of the last search searchUntil() finished
+
+    /**
+     * Creates a search over a copy of the given position.
+     *
+     * @param position the position to search from. It is copied, so it is not changed.
+     */
+    public Connect4Search(Connect4Position position)
+    {
+        this.position = new Connect4Position(position);
+        columnOrder = new int[position.getColumnCount()];
+        for (int i = 0; i < columnOrder.length; i++)
+        {
+            // 3, 2, 4, 1, 5, 0, 6 on a seven column board
+            columnOrder[i] = columnOrder.length / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        }
+    }
+
+    /**
+     * Creates a search over a copy of the given position that caches results in a table.
+     *
+     * @param position the position to search from. It is copied, so it is not changed.
+     * @param table the table to use, which may be shared with other searches; or null.
+     */
+    public Connect4Search(Connect4Position position, TranspositionTable table)
+    {
+        this(position);
+        this.table = table;
+    }
+
+    /**
+     * Get the position this search works on.
+     *
+     * @return the position, which is back in its starting state whenever no search is running.
+     */
+    public Connect4Position getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * Get the number of positions visited so far.
+     *
+     * @return the number of positions visited by every search run on this object.
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Get the score of the move returned by the last call to search().
+     *
+     * @return the score of the best move, from the point of view of the player to move.
+     */
+    public int getBestScore()
+    {
+        return bestScore;
+    }
+
+    /**
+     * Get the depth of the deepest search that searchUntil() finished.
+     *
+     * @return the depth whose best move searchUntil() returned.
+     */
+    public int getCompletedDepth()
+    {
+        return completedDepth;
+    }
+
+    /**
+     * Find the best move for the player to move with iterative deepening, searching one move
+     * deeper each time until the deadline passes. Depth 1 is always finished, so there is
+     * always a move to return. The table, if there is one, carries the best moves of each
+     * depth into the next, which keeps the repeated shallow searches cheap.
+     *
+     * @param deadline the System.nanoTime() value by which to stop.
+     * @param maxDepth the deepest search to try.
+     * @return the best move from the deepest search that finished, or -1 if the board is full.
+     */
+    public int searchUntil(long deadline, int maxDepth)
+    {
+        int emptySlots = position.getColumnCount() * position.getRowCount() - position.getMoveCount();
+        int bestMove = search(1);
+        int score = bestScore;
+        completedDepth = 1;
+        this.deadline = deadline;
+        timed = true;
+        for (int depth = 2; depth <= Math.min(maxDepth, emptySlots) && Math.abs(score) < WIN_SCORE / 2; depth++)
+        {
+            int move = search(depth);
+            if (aborted)
+            {
+                break;
+            }
+            bestMove = move;
+            score = bestScore;
+            completedDepth = depth;
+        }
+        timed = false;
+        aborted = false;
+        bestScore = score;
+        return bestMove;
+    }
+
+    /**
+     * Ask a searchUntil() running on another thread to stop as soon as possible. It returns the
+     * best move of the deepest search it had finished.
+     */
+    public void stop()
+    {
+        stopRequested = true;
+    }
+
+    /**
+     * Change the order moves are tried in, so that searches running side by side on the same
+     * table explore different parts of the tree first. Variation 0 is the normal order.
+     *
+     * @param variation which of the orders to use.
+     */
+    public void varyMoveOrder(int variation)
+    {
+        if (variation > 0 && columnOrder.length > 2)
+        {
+            // keep the center column first and swap one pair of the columns after it
+            int k = 1 + (variation - 1) % (columnOrder.length - 2);
+            int swap = columnOrder[k];
+            columnOrder[k] = columnOrder[k + 1];
+            columnOrder[k + 1] = swap;
+        }
+    }
+
+    /**
+     * Check whether the deadline has passed or stop() was called. The clock is read once every
+     * 1024 positions.
+     *
+     * @return true if the running search should stop.
+     */
+    protected boolean outOfTime()
+    {
+        if (timed && !aborted && (nodeCount & 1023) == 0 && (stopRequested || System.nanoTime() - deadline > 0))
+        {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    /**
+     * Find the best move for the player to move, looking a fixed number of moves ahead.
+     *
+     * @param depth the number of moves to look ahead; at least 1.
+     * @return the best column to play, or -1 if the board is full.
+     */
+    public int search(int depth)
+    {
+        int bestMove = -1;
+        bestScore = -INFINITY;
+        int alpha = -INFINITY;
+        int hashMove = table == null ? -1 : TranspositionTable.move(table.probe(position.getZobristKey()));
+        for (int i = -1; i < columnOrder.length; i++)
+        {
+            int column = i < 0 ? hashMove : columnOrder[i];
+            if (i >= 0 && column == hashMove)
+            {
+                continue;
+            }
+            if (position.canPlay(column))
+            {
+                int score;
+                if (position.isWinningMove(column))
+                {
+                    score = WIN_SCORE - position.getMoveCount() - 1;
+                }
+                else
+                {
+                    play(column);
+                    score = -negamax(depth - 1, -INFINITY, -alpha);
+                    undo(column);
+                    if (aborted)
+                    {
+                        return bestMove;
+                    }
+                }
+                if (score > bestScore)
+                {
+                    bestScore = score;
+                    bestMove = column;
+                    alpha = Math.max(alpha, score);
+                }
+            }
+        }
+        if (table != null && bestMove >= 0)
+        {
+            table.store(position.getZobristKey(), bestScore, TranspositionTable.EXACT, depth, bestMove);
+        }
+        return bestMove;
+    }
+
+    /**
+     * Score the current position by searching a fixed number of moves ahead.
+     *
+     * The position must not already be won; this is true for any position reached by playing a
+     * move that isWinningMove() rejected.
+     *
+     * @param depth the number of moves left to look ahead.
+     * @param alpha the score the player to move is already sure of.
+     * @param beta the score the opponent is already sure of, negated.
+     * @return the score of the position, exact if it is strictly between alpha and beta.
+     */
+    public int negamax(int depth, int alpha, int beta)
+    {
+        nodeCount++;
+        if (outOfTime())
+        {
+            return 0;
+        }
+        int moves = position.getMoveCount();
+        if (moves == position.getColumnCount() * position.getRowCount())
+        {
+            return 0;
+        }
+        if (position.canWinNext())
+        {
+            return WIN_SCORE - moves - 1;
+        }
+        if (depth <= 0)
+        {
+            return evaluate();
+        }
+        int hashMove = -1;
+        int originalAlpha = alpha;
+        if (table != null)
+        {
+            long entry = table.probe(position.getZobristKey());
+            if (entry != 0)
+            {
+                hashMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth)
+                {
+                    int score = TranspositionTable.score(entry);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha))
+                    {
+                        return score;
+                    }
+                }
+            }
+        }
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int i = -1; i < columnOrder.length; i++)
+        {
+            int column = i < 0 ? hashMove : columnOrder[i];
+            if (i >= 0 && column == hashMove)
+            {
+                continue;
+            }
+            if (position.canPlay(column))
+            {
+                play(column);
+                int score = -negamax(depth - 1, -beta, -alpha);
+                undo(column);
+                if (aborted)
+                {
+                    return 0;
+                }
+                if (score > best)
+                {
+                    best = score;
+                    bestMove = column;
+                    if (score > alpha)
+                    {
+                        alpha = score;
+                        if (alpha >= beta)
+                        {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (table != null)
+        {
+            int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(position.getZobristKey(), best, bound, depth, bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * Play a column in the searched position, keeping the evaluator up to date.
+     *
+     * @param column a playable column.
+     */
+    protected void play(int column)
+    {
+        if (evaluator != null)
+        {
+            evaluator.add(column, position.getRowCount() - 1 - position.getColumnHeight(column), position.getRedToMove());
+        }
+        position.play(column);
+    }
+
+    /**
+     * Take back the last token played in a column, keeping the evaluator up to date.
+     *
+     * @param column the column the last move was played in.
+     */
+    protected void undo(int column)
+    {
+        position.undo(column);
+        if (evaluator != null)
+        {
+            evaluator.remove(column, position.getRowCount() - 1 - position.getColumnHeight(column), position.getRedToMove());
+        }
+    }
+
+    /**
+     * Choose how evaluate() scores positions. By default it counts the empty slots that would
+     * complete four in a row. With pattern evaluation on, it uses a PatternEvaluator instead,
+     * which scores every line of four by how many tokens of one color it holds and is kept up
+     * to date as moves are played and taken back.
+     *
+     * @param enabled true to use the pattern evaluation, false to count threats.
+     */
+    public void setPatternEvaluation(boolean enabled)
+    {
+        evaluator = enabled ? new PatternEvaluator(position) : null;
+    }
+
+    /**
+     * Estimate the current position without searching further. Each empty slot that would
+     * complete four in a row is worth a point, more if a token can already be dropped there,
+     * and tokens near the center column are worth a little. With pattern evaluation on, the
+     * PatternEvaluator's score is used instead.
+     *
+     * @return the estimated score, from the point of view of the player to move.
+     */
+    public int evaluate()
+    {
+        if (evaluator != null)
+        {
+            return evaluator.getScore(position.getRedToMove());
+        }
+        long current = position.getCurrentMask();
+        long opponent = current ^ position.getOccupiedMask();
+        long playable = position.possibleMoves();
+        long myThreats = position.winningSlots(current);
+        long theirThreats = position.winningSlots(opponent);
+        int score = 16 * (Long.bitCount(myThreats) - Long.bitCount(theirThreats))
+            + 32 * (Long.bitCount(myThreats & playable) - Long.bitCount(theirThreats & playable));
+        long center = position.columnMask(position.getColumnCount() / 2);
+        score += 4 * (Long.bitCount(current & center) - Long.bitCount(opponent & center));
+        return score;
+    }
+}
@@ -2,13 +2,16 @@
  * A single slot in a Connect 4 board. A slot can be either empty or filled, and it can
  * be filled with either a red token or a yellow token.
  * 
+ * A slot does not hold any state of its own; it is a view of one slot of a Connect4Game's
+ * bitboard.
+ * 
  * You should not modify this class, but you will need to use methods within it.
  */
 public class Connect4Slot
 {
-    private boolean isFilled;
-    private boolean isRed;
-    private boolean isHighlighted;
+    private Connect4Game game;  // the game this slot is a view of
+    private int column;         // the column of the slot in the game
+    private int row;            // the row of the slot in the game
     
     /**
      * Creates a new Connect4Slot, initially unfilled.
@@ -17,8 +20,7 @@ public class Connect4Slot
      */
     public Connect4Slot()
     {
-        this.isFilled = false;
-        this.isRed = false;
+        this(new Connect4Game(1, 1), 0, 0);
     }
     /**
      * Copies the given slot.
@@ -29,8 +31,26 @@ public class Connect4Slot
      */
     public Connect4Slot(Connect4Slot slot)
     {
-        this.isFilled = slot.getIsFilled();
-        this.isRed = slot.getIsRed();
+        this();
+        if (slot.getIsFilled())
+        {
+            game.addToSlot(column, row, slot.getIsRed());
+        }
+    }
+    /**
+     * Creates a view of one slot of a game.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the game the slot belongs to.
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     */
+    Connect4Slot(Connect4Game game, int column, int row)
+    {
+        this.game = game;
+        this.column = column;
+        this.row = row;
     }
     /**
      * Checks if the slot is currently filled.
@@ -41,7 +61,7 @@ public class Connect4Slot
      */
     public boolean getIsFilled()
     {
-        return isFilled;
+        return game.isSlotFilled(column, row);
     }
     /**
      * If the slot is filled, checks if the token in the slot is red.
@@ -55,7 +75,7 @@ public class Connect4Slot
      */
     public boolean getIsRed()
     {
-        return isRed;
+        return game.isSlotRed(column, row);
     }
     /**
      * Checks if the slot is filled with yellow or not.
@@ -64,7 +84,7 @@ public class Connect4Slot
      */
     public boolean getIsYellow()
     {
-        if(this.isFilled && !this.isRed) //If this slot is filled and is not yellow
+        if(getIsFilled() && !getIsRed()) //If this slot is filled and is not yellow
         {
             return true; //Then it is yellow
         }
@@ -80,11 +100,7 @@ public class Connect4Slot
      */
     public void addRed()
     {
-        if (!isFilled)
-        {
-            this.isFilled = true;
-            this.isRed = true;
-        }
+        game.addToSlot(column, row, true);
     }
     /**
      * If the slot is currently empty, adds a yellow token to it.
@@ -93,11 +109,7 @@ public class Connect4Slot
      */
     public void addYellow()
     {
-        if (!isFilled)
-        {
-            this.isFilled = true;
-            this.isRed = false;
-        }
+        game.addToSlot(column, row, false);
     }
     /**
      * Checks if the slot should be highlighted because it is part of a winning move.
@@ -108,7 +120,7 @@ public class Connect4Slot
      */
     public boolean getIsHighlighted()
     {
-        return isHighlighted;
+        return game.isSlotHighlighted(column, row);
     }
     /**
      * Highlights the slot.
@@ -117,7 +129,7 @@ public class Connect4Slot
      */
     public void highlight()
     {
-        this.isHighlighted = true;
+        game.setSlotHighlighted(column, row);
     }
     /**
      * Clears the slot.
@@ -126,8 +138,6 @@ public class Connect4Slot
      */
     public void clear()
     {
-        this.isFilled = false;
-        this.isRed = false;
-        this.isHighlighted = false;
+        game.clearSlot(column, row);
     }
 }
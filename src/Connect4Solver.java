@@ -0,0 +1,447 @@
+/**
+ * Works out the exact value of a position with perfect play from both sides: who wins, and
+ * how soon, or that the game is a draw.
+ *
+ * Scores use the same scale as Connect4Search: a win is worth WIN_SCORE minus the number of
+ * tokens on the board once the winning token is in, a loss is the negative of that, and a
+ * draw is 0. So a score says both who wins and when.
+ *
+ * Inside the search the score is the number of turns the winner still had to spare when the
+ * game ended, which keeps the range of scores small. The exact value is found by a series of
+ * null-window searches that each only ask whether the value is above or below a guess,
+ * narrowing the range like a binary search. Each of those searches:
+ *
+ *  - only tries moves that don't let the opponent win straight away, and has to block if the
+ *    opponent threatens to win,
+ *  - tries first the move stored in the table, then moves that create the most threats, then
+ *    moves nearer the center,
+ *  - caches bounds in a TranspositionTable, which is kept from one call to the next.
+ *
+ * An OpeningBook built with OpeningBookBuilder's solve option can be given to skip the
+ * slowest positions, those of the first few moves.
+ */
+public class Connect4Solver
+{
+    public static final int DEFAULT_TABLE_ENTRIES = 1 << 22;  // 64 MB of transposition table
+
+    private TranspositionTable table;   // bounds on the values of positions, kept between calls
+    private OpeningBook book;           // solved positions of the first moves, or null
+    private Connect4Position position;  // the position being solved, changed in place
+    private int cells;                  // the number of slots on the board
+    private int[] columnOrder;          // columns ordered from the center outwards
+    private int[][] moveLists;          // the columns to try at each number of moves, so nothing is allocated
+    private int[][] moveScores;         // how promising each of those columns is
+    private long nodeCount;             // positions visited since the solver was created
+    private int bestScore;              // the score of the move returned by the last bestMove()
+
+    /**
+     * Creates a solver with a table of DEFAULT_TABLE_ENTRIES entries.
+     */
+    public Connect4Solver()
+    {
+        this(new TranspositionTable(DEFAULT_TABLE_ENTRIES));
+    }
+
+    /**
+     * Creates a solver that caches its results in a given table. The table should not be shared
+     * with a Connect4Search, since their scores mean different things.
+     *
+     * @param table the table to keep bounds in.
+     */
+    public Connect4Solver(TranspositionTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+     * Give the solver a book of solved positions to look up instead of solving them. Only books
+     * built with the solve option are used; others are ignored, since their scores are not
+     * exact.
+     *
+     * @param book the book, or null to solve every position.
+     */
+    public void setOpeningBook(OpeningBook book)
+    {
+        this.book = book != null && book.getDepth() == OpeningBook.SOLVED ? book : null;
+    }
+
+    /**
+     * Find the exact value of a position for the player to move.
+     *
+     * The position must not already be won.
+     *
+     * @param position the position to solve; it is not changed.
+     * @return WIN_SCORE minus the number of tokens on the board when the player to move wins,
+     *         the negative of that if they lose, or 0 for a draw.
+     */
+    public int solve(Connect4Position position)
+    {
+        prepare(position);
+        int moves = this.position.getMoveCount();
+        return toScore(solveInternal(Integer.MIN_VALUE, Integer.MAX_VALUE), moves);
+    }
+
+    /**
+     * Find only who wins a position with perfect play, not how soon. This is much faster than
+     * solve(), since the search can stop as soon as it knows the sign of the value.
+     *
+     * The position must not already be won.
+     *
+     * @param position the position to solve; it is not changed.
+     * @return 1 if the player to move wins, -1 if they lose, or 0 for a draw.
+     */
+    public int solveWeak(Connect4Position position)
+    {
+        prepare(position);
+        return Integer.signum(solveInternal(-1, 1));
+    }
+
+    /**
+     * Find the exact value of every move in a position.
+     *
+     * The position must not already be won.
+     *
+     * @param position the position to solve; it is not changed.
+     * @return the value of playing each column for the player to move, on the same scale as
+     *         solve(), or Integer.MIN_VALUE for a column that is full.
+     */
+    public int[] scoreMoves(Connect4Position position)
+    {
+        prepare(position);
+        int moves = this.position.getMoveCount();
+        int[] scores = new int[columnOrder.length];
+        for (int column = 0; column < scores.length; column++)
+        {
+            if (!this.position.canPlay(column))
+            {
+                scores[column] = Integer.MIN_VALUE;
+            }
+            else if (this.position.isWinningMove(column))
+            {
+                scores[column] = Connect4Search.WIN_SCORE - moves - 1;
+            }
+            else
+            {
+                this.position.play(column);
+                scores[column] = this.position.isFull() ? 0 : -toScore(solveInternal(Integer.MIN_VALUE, Integer.MAX_VALUE), moves + 1);
+                this.position.undo(column);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Find a move with the best value for the player to move: the fastest win, or else a
+     * draw, or else the slowest loss. Ties go to the column nearest the center.
+     *
+     * The position must not already be won.
+     *
+     * @param position the position to solve; it is not changed.
+     * @return the column to play, or -1 if the board is full.
+     */
+    public int bestMove(Connect4Position position)
+    {
+        int[] scores = scoreMoves(position);
+        int best = -1;
+        for (int column : columnOrder)
+        {
+            if (scores[column] != Integer.MIN_VALUE && (best < 0 || scores[column] > scores[best]))
+            {
+                best = column;
+            }
+        }
+        bestScore = best < 0 ? 0 : scores[best];
+        return best;
+    }
+
+    /**
+     * Get the score of the move returned by the last call to bestMove().
+     *
+     * @return the exact value of that move for the player who was to move.
+     */
+    public int getBestScore()
+    {
+        return bestScore;
+    }
+
+    /**
+     * Get the number of positions searched since this solver was created.
+     *
+     * @return the node count.
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Get the table the solver caches bounds in.
+     *
+     * @return the transposition table.
+     */
+    public TranspositionTable getTranspositionTable()
+    {
+        return table;
+    }
+
+    /**
+     * Find how many more tokens will be played before the game ends, if both sides play
+     * perfectly.
+     *
+     * @param position the position that was solved.
+     * @param score the value solve() returned for it.
+     * @return the number of tokens still to be played, counting the winning one.
+     */
+    public static int movesToEnd(Connect4Position position, int score)
+    {
+        if (score == 0)
+        {
+            return position.getColumnCount() * position.getRowCount() - position.getMoveCount();
+        }
+        return Connect4Search.WIN_SCORE - Math.abs(score) - position.getMoveCount();
+    }
+
+    /**
+     * Convert a score to the number of turns the winner has to spare, the scale benchmark sets
+     * usually give their expected values on: positive if the player to move wins, the sooner
+     * the larger, negative if they lose, and 0 for a draw.
+     *
+     * @param position the position the score is for.
+     * @param score a score on Connect4Search's scale, such as one returned by solve().
+     * @return the value in turns to spare.
+     */
+    public static int turnsToSpare(Connect4Position position, int score)
+    {
+        return fromScore(score, position.getColumnCount() * position.getRowCount());
+    }
+
+    /**
+     * Copy a position in and set up the move lists for its size.
+     */
+    private void prepare(Connect4Position position)
+    {
+        this.position = new Connect4Position(position);
+        int columns = position.getColumnCount();
+        cells = columns * position.getRowCount();
+        if (columnOrder == null || columnOrder.length != columns || moveLists.length != cells + 1)
+        {
+            columnOrder = new int[columns];
+            for (int i = 0; i < columns; i++)
+            {
+                columnOrder[i] = columns / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+            }
+            moveLists = new int[cells + 1][columns];
+            moveScores = new int[cells + 1][columns];
+            table.clear();      // bounds for another board size mean nothing here
+        }
+    }
+
+    /**
+     * Solve the copied position with a series of null-window searches.
+     *
+     * @param lowest values below this are not told apart, which speeds up the search.
+     * @param highest values above this are not told apart.
+     * @return the value of the position in turns to spare, clamped to lowest and highest.
+     */
+    private int solveInternal(int lowest, int highest)
+    {
+        int moves = position.getMoveCount();
+        if (position.canWinNext())
+        {
+            return Math.min(highest, (cells + 1 - moves) / 2);
+        }
+        int min = Math.max(lowest, -(cells - moves) / 2);
+        int max = Math.min(highest, (cells + 1 - moves) / 2);
+        while (min < max)
+        {
+            // try guesses near 0 first, since most positions are close to a draw
+            int guess = min + (max - min) / 2;
+            if (guess <= 0 && min / 2 < guess)
+            {
+                guess = min / 2;
+            }
+            else if (guess >= 0 && max / 2 > guess)
+            {
+                guess = max / 2;
+            }
+            int value = negamax(guess, guess + 1);
+            if (value <= guess)
+            {
+                max = value;
+            }
+            else
+            {
+                min = value;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Search the position, which must not have a winning move for the player to move.
+     *
+     * @param alpha the value the player to move is already sure of.
+     * @param beta the value the opponent is already sure of, negated.
+     * @return the value in turns to spare, exact if it is strictly between alpha and beta.
+     */
+    private int negamax(int alpha, int beta)
+    {
+        nodeCount++;
+        int moves = position.getMoveCount();
+        long current = position.getCurrentMask();
+        long occupied = position.getOccupiedMask();
+        long possible = position.possibleMoves();
+        long opponentWins = position.winningSlots(current ^ occupied);
+        long forced = possible & opponentWins;
+        if (forced != 0)
+        {
+            if ((forced & (forced - 1)) != 0)
+            {
+                return -(cells - moves) / 2;    // two threats at once can't both be blocked
+            }
+            possible = forced;
+        }
+        possible &= ~(opponentWins >>> 1);     // don't play under a slot the opponent wins on
+        if (possible == 0)
+        {
+            return -(cells - moves) / 2;        // every move lets the opponent win
+        }
+        if (moves >= cells - 2)
+        {
+            return 0;   // neither player can win with the last two tokens
+        }
+
+        int min = -(cells - 2 - moves) / 2;     // the opponent can't win on their next move
+        if (alpha < min)
+        {
+            alpha = min;
+            if (alpha >= beta)
+            {
+                return alpha;
+            }
+        }
+        int max = (cells - 1 - moves) / 2;      // the player to move can't win on this move
+        if (book != null && book.contains(position))
+        {
+            return fromScore(book.getScore(position), cells);
+        }
+        long key = position.getZobristKey();
+        long entry = table.probe(key);
+        int hashMove = -1;
+        if (entry != 0)
+        {
+            hashMove = TranspositionTable.move(entry);
+            int value = TranspositionTable.score(entry);
+            if (TranspositionTable.bound(entry) == TranspositionTable.LOWER)
+            {
+                if (value > min)
+                {
+                    min = value;
+                    if (alpha < min)
+                    {
+                        alpha = min;
+                        if (alpha >= beta)
+                        {
+                            return alpha;
+                        }
+                    }
+                }
+            }
+            else if (value < max)
+            {
+                max = value;
+            }
+        }
+        if (beta > max)
+        {
+            beta = max;
+            if (alpha >= beta)
+            {
+                return beta;
+            }
+        }
+
+        // order the moves: the table's move, then by the number of threats they make, then by the center
+        int[] list = moveLists[moves];
+        int[] scores = moveScores[moves];
+        int count = 0;
+        for (int column : columnOrder)
+        {
+            long move = possible & position.columnMask(column);
+            if (move != 0)
+            {
+                int score = column == hashMove ? Integer.MAX_VALUE
+                    : Long.bitCount(position.winningSlots(current | move, occupied | move));
+                int i = count++;
+                while (i > 0 && scores[i - 1] < score)
+                {
+                    list[i] = list[i - 1];
+                    scores[i] = scores[i - 1];
+                    i--;
+                }
+                list[i] = column;
+                scores[i] = score;
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            int column = list[i];
+            position.play(column);
+            int value = -negamax(-beta, -alpha);
+            position.undo(column);
+            if (value >= beta)
+            {
+                table.store(key, value, TranspositionTable.LOWER, cells - moves, column);
+                return value;
+            }
+            if (value > alpha)
+            {
+                alpha = value;
+            }
+        }
+        table.store(key, alpha, TranspositionTable.UPPER, cells - moves, -1);
+        return alpha;
+    }
+
+    /**
+     * Turn a value in turns to spare into a score on Connect4Search's scale.
+     *
+     * @param value the value for the player to move.
+     * @param moves the number of tokens on the board.
+     * @return the score.
+     */
+    private int toScore(int value, int moves)
+    {
+        if (value == 0)
+        {
+            return 0;
+        }
+        // the winner moves on every other turn: the player to move if the value is positive
+        int end = cells + 2 - 2 * Math.abs(value);
+        int winnerParity = value > 0 ? moves + 1 : moves;
+        if ((end - winnerParity) % 2 != 0)
+        {
+            end--;
+        }
+        return value > 0 ? Connect4Search.WIN_SCORE - end : end - Connect4Search.WIN_SCORE;
+    }
+
+    /**
+     * Turn a score on Connect4Search's scale back into a value in turns to spare.
+     *
+     * @param score the score for the player to move.
+     * @param cells the number of slots on the board.
+     * @return the value.
+     */
+    private static int fromScore(int score, int cells)
+    {
+        if (score == 0)
+        {
+            return 0;
+        }
+        int end = Connect4Search.WIN_SCORE - Math.abs(score);
+        int value = (cells + 2 - end) / 2;
+        return score > 0 ? value : -value;
+    }
+}
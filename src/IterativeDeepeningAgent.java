@@ -0,0 +1,221 @@
+/**
+ * An agent that searches deeper and deeper until its time for the move runs out.
+ *
+ * Instead of a fixed depth, this agent is given a time budget per move. It searches depth 1,
+ * then depth 2, and so on, and when the budget runs out it plays the best move of the last
+ * depth it finished. On a small board or late in the game it reaches deep; on a big board it
+ * still answers on time.
+ *
+ * With pondering turned on, the agent also searches while the opponent is thinking. After each
+ * of its moves it starts a search of the opponent's position on a background thread, which
+ * fills the transposition table with the replies the opponent is likely to play and the
+ * answers to them. When the agent is next asked to move, that search is stopped and the real
+ * search starts out with all of its results in the table.
+ */
+public class IterativeDeepeningAgent extends NegamaxAgent implements Shutdownable
+{
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 100;  // the time budget if none is given
+    public static final int PONDER_TIME_FACTOR = 10;  // pondering gives up after this many move budgets
+
+    protected long timeLimitMillis;   // how long each move may take
+    protected int lastDepth;          // the depth reached on the last move
+    protected boolean ponder;         // whether to search while the opponent is thinking
+    private Connect4Search ponderSearch;  // the search running during the opponent's turn, or null
+    private Thread ponderThread;      // the thread running it
+    private int lastPonderDepth;      // the depth the last pondering search reached
+    private boolean pondered;         // whether the table's generation was started by pondering
+
+    /**
+     * Constructs a new agent with DEFAULT_TIME_LIMIT_MILLIS per move.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public IterativeDeepeningAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_TIME_LIMIT_MILLIS);
+    }
+
+    /**
+     * Constructs a new agent with a given time budget per move.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param timeLimitMillis The time each move may take, in milliseconds.
+     */
+    public IterativeDeepeningAgent(Connect4Game game, boolean iAmRed, long timeLimitMillis)
+    {
+        this(game, iAmRed, timeLimitMillis, new TranspositionTable(DEFAULT_TABLE_ENTRIES));
+    }
+
+    /**
+     * Constructs a new agent with a given time budget per move using a given table.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param timeLimitMillis The time each move may take, in milliseconds.
+     * @param table The transposition table to cache results in.
+     */
+    public IterativeDeepeningAgent(Connect4Game game, boolean iAmRed, long timeLimitMillis, TranspositionTable table)
+    {
+        super(game, iAmRed, game.getColumnCount() * game.getRowCount(), table);
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * Stops pondering on the last game and empties the transposition table for the next one.
+     */
+    public void newGame()
+    {
+        stopPondering();
+        pondered = false;
+        super.newGame();
+    }
+
+    /**
+     * Stops pondering, plays a move, and then starts pondering on the opponent's turn if
+     * pondering is turned on and the game is not over.
+     */
+    public void move()
+    {
+        stopPondering();
+        super.move();
+        if (ponder)
+        {
+            Connect4Position position = myGame.getPosition();
+            position.setRedToMove(!iAmRed);
+            if (!position.isFull() && !position.hasFourInARow(position.getCurrentMask() ^ position.getOccupiedMask()))
+            {
+                startPondering(position);
+            }
+        }
+    }
+
+    /**
+     * Start searching a position where the opponent is to move on a background thread. The
+     * search stops on its own once it has searched for PONDER_TIME_FACTOR move budgets, so an
+     * agent whose game has ended doesn't search forever. It starts the table generation that
+     * the next real search carries on, so its entries aren't the first to be replaced.
+     *
+     * @param position the position after this agent's move; it is copied.
+     */
+    private void startPondering(Connect4Position position)
+    {
+        long deadline = System.nanoTime() + PONDER_TIME_FACTOR * timeLimitMillis * 1000000L;
+        table.newSearch();
+        Connect4Search search = createSearch(position);
+        ponderSearch = search;
+        ponderThread = new Thread(() -> search.searchUntil(deadline, depth), "IterativeDeepeningAgent ponder");
+        ponderThread.setDaemon(true);   // don't keep the program running after the game
+        ponderThread.start();
+    }
+
+    /**
+     * Stop the search running during the opponent's turn, if there is one, and wait for it to
+     * finish. Whatever it stored in the table is kept for the next move.
+     */
+    public void stopPondering()
+    {
+        if (ponderThread == null)
+        {
+            return;
+        }
+        ponderSearch.stop();
+        try
+        {
+            ponderThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        lastPonderDepth = ponderSearch.getCompletedDepth();
+        pondered = true;
+        ponderSearch = null;
+        ponderThread = null;
+    }
+
+    /**
+     * Stops the search running during the opponent's turn, if there is one. The agent can't
+     * move after this.
+     */
+    public void shutdown()
+    {
+        stopPondering();
+    }
+
+    /**
+     * Turn pondering, searching during the opponent's turn, on or off. Turning it off stops
+     * any search that is running.
+     *
+     * @param enabled true to ponder.
+     */
+    public void setPondering(boolean enabled)
+    {
+        ponder = enabled;
+        if (!enabled)
+        {
+            stopPondering();
+        }
+    }
+
+    /**
+     * Get the depth the search during the opponent's last turn reached.
+     *
+     * @return the depth of the deepest pondering search finished, or 0 if there was none.
+     */
+    public int getLastPonderDepth()
+    {
+        return lastPonderDepth;
+    }
+
+    /**
+     * Start a new table generation for the search of a move, unless pondering on the
+     * opponent's turn just started one; the real search then stores its results in the same
+     * generation as the pondering search, instead of replacing them first.
+     */
+    protected void newSearch()
+    {
+        if (!pondered)
+        {
+            table.newSearch();
+        }
+        pondered = false;
+    }
+
+    /**
+     * Chooses the column to play by searching until the time budget runs out.
+     *
+     * @param position the position to search; it is not changed.
+     * @return the column to play, or -1 if the board is full.
+     */
+    protected int chooseMove(Connect4Position position)
+    {
+        long deadline = System.nanoTime() + timeLimitMillis * 1000000L;
+        newSearch();
+        Connect4Search search = createSearch(position);
+        int move = search.searchUntil(deadline, depth);
+        lastDepth = search.getCompletedDepth();
+        return move;
+    }
+
+    /**
+     * Get the depth the last move was searched to.
+     *
+     * @return the depth of the deepest search finished on the last move.
+     */
+    public int getLastDepth()
+    {
+        return lastDepth;
+    }
+
+    /**
+     * Returns the name of this agent.
+     *
+     * @return the agent's name
+     */
+    public String getName()
+    {
+        return "Iterative Deepening Agent (" + timeLimitMillis + " ms)";
+    }
+}
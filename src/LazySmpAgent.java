@@ -0,0 +1,158 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An agent that searches with several threads at once using Lazy SMP.
+ *
+ * Every thread runs its own iterative-deepening search of the same position, and they all
+ * share one TranspositionTable. The threads hardly coordinate at all: each one tries the moves
+ * in a slightly different order, and whatever one thread stores in the table saves the others
+ * from searching it again. The net effect is a deeper search in the same time. When the time
+ * budget runs out, the agent plays the move of the thread that finished the deepest search.
+ */
+public class LazySmpAgent extends IterativeDeepeningAgent
+{
+    public static final int DEFAULT_TABLE_ENTRIES = 1 << 20;  // 16 MB, shared by every thread
+
+    protected int threadCount;          // the number of threads searching each move
+    private ExecutorService helpers;    // runs the searches other than the one on the caller's thread
+
+    /**
+     * Constructs a new agent that uses every available processor and the default time budget.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public LazySmpAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_TIME_LIMIT_MILLIS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new agent with a given time budget and number of threads.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param timeLimitMillis The time each move may take, in milliseconds.
+     * @param threadCount The number of threads to search with; at least 1.
+     */
+    public LazySmpAgent(Connect4Game game, boolean iAmRed, long timeLimitMillis, int threadCount)
+    {
+        super(game, iAmRed, timeLimitMillis, new TranspositionTable(DEFAULT_TABLE_ENTRIES));
+        this.threadCount = Math.max(1, threadCount);
+        if (this.threadCount > 1)
+        {
+            helpers = Executors.newFixedThreadPool(this.threadCount - 1, runnable -> {
+                Thread thread = new Thread(runnable, "LazySmpAgent helper");
+                thread.setDaemon(true);     // don't keep the program running after the game
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Chooses the column to play by searching on every thread until the time budget runs out.
+     *
+     * @param position the position to search; it is not changed.
+     * @return the column to play, or -1 if the board is full.
+     * @throws IllegalStateException if a helper thread's search failed.
+     */
+    protected int chooseMove(Connect4Position position)
+    {
+        long deadline = System.nanoTime() + timeLimitMillis * 1000000L;
+        newSearch();
+        Connect4Search[] searches = new Connect4Search[threadCount];
+        int[] moves = new int[threadCount];
+        Future<?>[] running = new Future<?>[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            searches[i] = createSearch(position);
+            searches[i].varyMoveOrder(i);
+        }
+        for (int i = 1; i < threadCount; i++)
+        {
+            final int id = i;
+            running[i] = helpers.submit(() -> {
+                moves[id] = searches[id].searchUntil(deadline, depth);
+            });
+        }
+        try
+        {
+            moves[0] = searches[0].searchUntil(deadline, depth);
+        }
+        finally
+        {
+            for (int i = 1; i < threadCount; i++)
+            {
+                searches[i].stop();
+            }
+        }
+        int best = 0;
+        Throwable failure = null;     // why the first helper that failed did
+        for (int i = 1; i < threadCount; i++)
+        {
+            try
+            {
+                running[i].get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();     // leave it for the caller; the helpers have been told to stop
+                break;
+            }
+            catch (ExecutionException e)
+            {
+                if (failure == null)
+                {
+                    failure = e.getCause();
+                }
+                continue;
+            }
+            if (searches[i].getCompletedDepth() > searches[best].getCompletedDepth())
+            {
+                best = i;
+            }
+        }
+        if (failure != null)
+        {
+            throw new IllegalStateException("A LazySmpAgent helper failed", failure);
+        }
+        lastDepth = searches[best].getCompletedDepth();
+        return moves[best];
+    }
+
+    /**
+     * Stops the helper threads, and the search during the opponent's turn if there is one.
+     * The agent can't move after this.
+     */
+    public void shutdown()
+    {
+        super.shutdown();
+        if (helpers != null)
+        {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the number of threads this agent searches with.
+     *
+     * @return the number of threads.
+     */
+    public int getThreadCount()
+    {
+        return threadCount;
+    }
+
+    /**
+     * Returns the name of this agent.
+     *
+     * @return the agent's name
+     */
+    public String getName()
+    {
+        return "Lazy SMP Agent (" + threadCount + " threads, " + timeLimitMillis + " ms)";
+    }
+}
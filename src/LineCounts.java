@@ -0,0 +1,219 @@
+import java.util.Arrays;
+
+/**
+ * Keeps count of how many red and yellow tokens lie on each line of four, updated one token at
+ * a time.
+ *
+ * Adding or removing a token only touches the lines in WinningLines that pass through its
+ * slot, so keeping the counts costs a handful of array updates per move. With the counts kept
+ * up to date, immediate wins, forced blocks and open threats are found by looking at the lines
+ * through a slot, or read straight off a running total.
+ *
+ * A threat here is a line with three tokens of one color and an empty fourth slot, whether or
+ * not a token can be dropped into that slot yet.
+ */
+public class LineCounts
+{
+    protected WinningLines lines;   // the lines of the board
+    protected int[] redCounts;      // the number of red tokens on each line
+    protected int[] yellowCounts;   // the number of yellow tokens on each line
+    private int redThreats;         // lines with three red tokens and no yellow one
+    private int yellowThreats;      // lines with three yellow tokens and no red one
+
+    /**
+     * Creates counts for an empty board.
+     *
+     * @param numCols the number of columns on the board.
+     * @param numRows the number of rows on the board.
+     */
+    public LineCounts(int numCols, int numRows)
+    {
+        this.lines = WinningLines.forSize(numCols, numRows);
+        this.redCounts = new int[lines.getLineCount()];
+        this.yellowCounts = new int[lines.getLineCount()];
+    }
+
+    /**
+     * Creates counts for the tokens already on the board of a position.
+     *
+     * @param position the position to count.
+     */
+    public LineCounts(Connect4Position position)
+    {
+        this(position.getColumnCount(), position.getRowCount());
+        for (int column = 0; column < position.getColumnCount(); column++)
+        {
+            for (int row = 0; row < position.getRowCount(); row++)
+            {
+                if (position.isFilled(column, row))
+                {
+                    count(column, row, position.isRed(column, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Count a token that has been put into an empty slot.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @param red true for a red token, false for a yellow one.
+     */
+    public void add(int column, int row, boolean red)
+    {
+        count(column, row, red);
+    }
+
+    /**
+     * Count a token in the lines through its slot. The constructor uses this instead of add(),
+     * so that a subclass's add() is never called before the subclass has been constructed.
+     */
+    private void count(int column, int row, boolean red)
+    {
+        int[] own = red ? redCounts : yellowCounts;
+        int[] other = red ? yellowCounts : redCounts;
+        int threats = 0;        // change in this color's threats
+        int blocked = 0;        // the other color's threats this token fills in
+        for (int line : lines.getLinesThrough(column, row))
+        {
+            if (other[line] == 0)
+            {
+                if (own[line] == 2)
+                {
+                    threats++;
+                }
+                else if (own[line] == 3)
+                {
+                    threats--;  // the line is complete, so it is no longer a threat
+                }
+            }
+            else if (other[line] == 3 && own[line] == 0)
+            {
+                blocked++;
+            }
+            own[line]++;
+        }
+        changeThreats(red, threats, blocked);
+    }
+
+    /**
+     * Stop counting a token that has been taken out of its slot.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @param red true for a red token, false for a yellow one.
+     */
+    public void remove(int column, int row, boolean red)
+    {
+        int[] own = red ? redCounts : yellowCounts;
+        int[] other = red ? yellowCounts : redCounts;
+        int threats = 0;
+        int blocked = 0;
+        for (int line : lines.getLinesThrough(column, row))
+        {
+            own[line]--;
+            if (other[line] == 0)
+            {
+                if (own[line] == 2)
+                {
+                    threats--;
+                }
+                else if (own[line] == 3)
+                {
+                    threats++;
+                }
+            }
+            else if (other[line] == 3 && own[line] == 0)
+            {
+                blocked--;
+            }
+        }
+        changeThreats(red, threats, blocked);
+    }
+
+    /**
+     * Apply the change in threats from adding or removing a token.
+     */
+    private void changeThreats(boolean red, int threats, int blocked)
+    {
+        if (red)
+        {
+            redThreats += threats;
+            yellowThreats -= blocked;
+        }
+        else
+        {
+            yellowThreats += threats;
+            redThreats -= blocked;
+        }
+    }
+
+    /**
+     * Clear every count, as for an empty board.
+     */
+    public void clear()
+    {
+        Arrays.fill(redCounts, 0);
+        Arrays.fill(yellowCounts, 0);
+        redThreats = 0;
+        yellowThreats = 0;
+    }
+
+    /**
+     * Get the lines these counts are kept for.
+     *
+     * @return the shared line index for the board size.
+     */
+    public WinningLines getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * Get the number of tokens of one color on a line.
+     *
+     * @param line the line number.
+     * @param red true to count red tokens, false to count yellow ones.
+     * @return the number of tokens of that color on the line, from 0 to 4.
+     */
+    public int getCount(int line, boolean red)
+    {
+        return red ? redCounts[line] : yellowCounts[line];
+    }
+
+    /**
+     * Check whether a token of one color in an empty slot would make four in a row. Use it on
+     * the next free slot of a column to find an immediate win, or with the other color to find
+     * a move that must be blocked.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @param red true to check for red, false for yellow.
+     * @return true if a line through the slot already holds three tokens of that color.
+     */
+    public boolean completesLine(int column, int row, boolean red)
+    {
+        int[] own = red ? redCounts : yellowCounts;
+        for (int line : lines.getLinesThrough(column, row))
+        {
+            if (own[line] == 3)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of open threats of one color: lines holding three of its tokens and an
+     * empty fourth slot.
+     *
+     * @param red true for red's threats, false for yellow's.
+     * @return the number of threats.
+     */
+    public int getThreatCount(boolean red)
+    {
+        return red ? redThreats : yellowThreats;
+    }
+}
@@ -1,3 +1,5 @@
+import javax.swing.JOptionPane;
+
 /**
  * The main driver of the program. This file will create the game, create the two agents,
  * and create the window for the game. After that, Connect4Frame runs everything.
@@ -8,7 +10,15 @@ public class Main
 {
     public static void main(String[] args)
     {
-        Connect4Game game = new Connect4Game(7, 6); // create the game; these sizes can be altered for larger or smaller games
+        int numCols = 7;    // the size of the board; these can be altered for larger or smaller games,
+        int numRows = 6;    // as long as numCols * (numRows + 1) is at most 64, for example 8x7 but not 8x8
+        if (!Connect4Position.fits(numCols, numRows)) // a board that is too big can't be played, so say so instead of crashing
+        {
+            JOptionPane.showMessageDialog(null, "A " + numCols + "x" + numRows + " board is too big: the number of columns"
+                + " times the number of rows plus one can be at most 64.", "Connect 4", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Connect4Game game = new Connect4Game(numCols, numRows); // create the game
         Agent redPlayer = new BeginnerAgent(game, true); // create the red player, any subclass of Agent
         Agent yellowPlayer = new MyAgent(game, false); // create the yellow player, any subclass of Agent
         
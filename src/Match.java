@@ -0,0 +1,145 @@
+import java.util.SplittableRandom;
+
+/**
+ * Plays games between two agents without a window.
+ *
+ * A Match follows the same rules as Connect4Frame: a random player goes first, every move is
+ * checked with Connect4Game.validateMove(), and the game ends when a player connects four, the
+ * board fills up, or a move breaks the rules. But it never touches Swing or AWT, so it runs on
+ * a headless server, and it doesn't spend time repainting or building status messages between
+ * moves. Each game comes back as a MatchResult instead of being announced.
+ *
+ * Every game starts by calling newGame() on both agents, so they can forget the game before.
+ * Every game also has a seed, which decides who plays first and seeds both agents (see
+ * Seedable), so that a game can be played again exactly with play(seed), on this match or on a
+ * new match between new agents. The seeds of the games come from the match's own seed in turn.
+ *
+ * The agents must have been constructed with the same game the match plays on, and with the
+ * colors they are given here.
+ */
+public class Match
+{
+    private Connect4Game game;      // the board both agents play on
+    private Agent redPlayer;        // the agent playing the red tokens
+    private Agent yellowPlayer;     // the agent playing the yellow tokens
+    private SplittableRandom seeds; // gives each game its seed
+
+    /**
+     * Creates a match between two agents.
+     *
+     * @param game the game both agents were constructed with.
+     * @param redPlayer the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     */
+    public Match(Connect4Game game, Agent redPlayer, Agent yellowPlayer)
+    {
+        this(game, redPlayer, yellowPlayer, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates a match between two agents whose games are seeded from a given seed, so the
+     * whole match can be played again.
+     *
+     * @param game the game both agents were constructed with.
+     * @param redPlayer the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     * @param seed the seed the seeds of the games come from.
+     */
+    public Match(Connect4Game game, Agent redPlayer, Agent yellowPlayer, long seed)
+    {
+        this.game = game;
+        this.redPlayer = redPlayer;
+        this.yellowPlayer = yellowPlayer;
+        this.seeds = new SplittableRandom(seed);
+    }
+
+    /**
+     * Clear the board and play a game to the end, with the next seed of the match.
+     *
+     * @return how the game ended.
+     */
+    public MatchResult play()
+    {
+        return play(seeds.nextLong());
+    }
+
+    /**
+     * Clear the board and play a game to the end from a given seed. Both agents are told a new
+     * game is starting, the seed decides who goes first, and each agent is given a seed worked
+     * out from it. If an agent throws anything
+     * while moving, the game stops there and the result records what it threw as the error.
+     *
+     * @param seed the game's seed, for example MatchResult.getSeed() of a game to play again.
+     * @return how the game ended.
+     */
+    public MatchResult play(long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean redPlaysFirst = random.nextBoolean();
+        redPlayer.newGame();
+        yellowPlayer.newGame();
+        Seedable.seed(redPlayer, random.nextLong());
+        Seedable.seed(yellowPlayer, random.nextLong());
+        game.clearBoard();
+        game.setRedPlayedFirst(redPlaysFirst);
+        boolean redPlayerTurn = redPlaysFirst;
+        int stride = game.getRowCount() + 1;
+        StringBuilder moves = new StringBuilder();
+        long redNanos = 0;
+        long yellowNanos = 0;
+        char won = 'N';
+        String error = "";
+        while (true)
+        {
+            Agent player = redPlayerTurn ? redPlayer : yellowPlayer;
+            long occupiedBefore = game.getOccupiedMask();   // store the old board's bitboards for validation
+            long redBefore = game.getRedMask();
+            long start = System.nanoTime();
+            try
+            {
+                player.move();
+            }
+            catch (Throwable e)
+            {
+                error = player + " failed: " + e;   // a crash or an Error stops the game like an invalid move
+                break;
+            }
+            finally
+            {
+                if (redPlayerTurn)
+                {
+                    redNanos += System.nanoTime() - start;
+                }
+                else
+                {
+                    yellowNanos += System.nanoTime() - start;
+                }
+            }
+            error = game.validateMove(occupiedBefore, redBefore);
+            if (!error.isEmpty())
+            {
+                break;
+            }
+            long added = game.getOccupiedMask() & ~occupiedBefore;
+            moves.append((char) ('1' + Long.numberOfTrailingZeros(added) / stride));
+            redPlayerTurn = !redPlayerTurn;
+            won = game.lastMoveWon();
+            if (won != 'N' || game.boardFull())
+            {
+                break;
+            }
+        }
+        return new MatchResult(redPlayer.toString(), yellowPlayer.toString(), seed, redPlaysFirst, won, error,
+            moves.toString(), redNanos, yellowNanos);
+    }
+
+    /**
+     * Get the game the match is played on.
+     *
+     * @return the game.
+     */
+    public Connect4Game getGame()
+    {
+        return game;
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * How a game played by a Match ended.
+ *
+ * A game ends in one of three ways: a player connects four, the board fills up, or a player
+ * breaks the rules (a move that Connect4Game.validateMove() rejects, or an exception thrown
+ * from move()), which stops the game with no winner, just as Connect4Frame does.
+ */
+public class MatchResult
+{
+    private String redName;         // the red agent, as Agent.toString() gives it
+    private String yellowName;      // the yellow agent
+    private long seed;              // the seed the game was played from
+    private boolean redPlayedFirst; // whether red made the first move
+    private char winner;            // 'R' or 'Y' for a win, 'N' for a draw or a stopped game
+    private String error;           // why the game was stopped, or the empty string
+    private String moves;           // the columns played, one character each, from '1' for the first
+    private long redNanos;          // the time red spent in move()
+    private long yellowNanos;       // the time yellow spent in move()
+
+    /**
+     * Creates the result of a game.
+     *
+     * @param redName the red agent.
+     * @param yellowName the yellow agent.
+     * @param seed the seed the game was played from.
+     * @param redPlayedFirst whether red made the first move.
+     * @param winner 'R' or 'Y' for the winner, or 'N' if nobody won.
+     * @param error why the game was stopped, or the empty string if it ended normally.
+     * @param moves the columns played, counted from 1.
+     * @param redNanos the time red spent moving, in nanoseconds.
+     * @param yellowNanos the time yellow spent moving, in nanoseconds.
+     */
+    public MatchResult(String redName, String yellowName, long seed, boolean redPlayedFirst, char winner,
+                       String error, String moves, long redNanos, long yellowNanos)
+    {
+        this.redName = redName;
+        this.yellowName = yellowName;
+        this.seed = seed;
+        this.redPlayedFirst = redPlayedFirst;
+        this.winner = winner;
+        this.error = error;
+        this.moves = moves;
+        this.redNanos = redNanos;
+        this.yellowNanos = yellowNanos;
+    }
+
+    /**
+     * Get the name of the red agent.
+     *
+     * @return the red agent, as Agent.toString() gives it.
+     */
+    public String getRedName()
+    {
+        return redName;
+    }
+
+    /**
+     * Get the name of the yellow agent.
+     *
+     * @return the yellow agent, as Agent.toString() gives it.
+     */
+    public String getYellowName()
+    {
+        return yellowName;
+    }
+
+    /**
+     * Get the seed the game was played from. Match.play() with this seed, on a new match
+     * between the same kind of agents, plays the same game again.
+     *
+     * @return the game's seed.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Get whether red made the first move.
+     *
+     * @return true if red played first.
+     */
+    public boolean getRedPlayedFirst()
+    {
+        return redPlayedFirst;
+    }
+
+    /**
+     * Get the winner of the game, the same way Connect4Game.lastMoveWon() gives it.
+     *
+     * @return 'R' if red won, 'Y' if yellow won, or 'N' for a draw or a stopped game.
+     */
+    public char getWinner()
+    {
+        return winner;
+    }
+
+    /**
+     * Check whether the game ended with the board full and nobody connecting four.
+     *
+     * @return true for a draw.
+     */
+    public boolean isDraw()
+    {
+        return winner == 'N' && error.isEmpty();
+    }
+
+    /**
+     * Get why the game was stopped before it ended.
+     *
+     * @return the validation error or exception, or the empty string if the game ended normally.
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * Get the moves of the game.
+     *
+     * @return the columns played in order, one character each, from '1' for the first column.
+     */
+    public String getMoves()
+    {
+        return moves;
+    }
+
+    /**
+     * Get the number of tokens played.
+     *
+     * @return the number of moves.
+     */
+    public int getMoveCount()
+    {
+        return moves.length();
+    }
+
+    /**
+     * Get the time red spent choosing its moves.
+     *
+     * @return the total time in red's move(), in nanoseconds.
+     */
+    public long getRedNanos()
+    {
+        return redNanos;
+    }
+
+    /**
+     * Get the time yellow spent choosing its moves.
+     *
+     * @return the total time in yellow's move(), in nanoseconds.
+     */
+    public long getYellowNanos()
+    {
+        return yellowNanos;
+    }
+
+    /**
+     * Describes the result the way Connect4Frame announces it.
+     *
+     * @return the result.
+     */
+    public String toString()
+    {
+        if (!error.isEmpty())
+        {
+            return error;
+        }
+        else if (winner == 'R')
+        {
+            return redName + " wins!";
+        }
+        else if (winner == 'Y')
+        {
+            return yellowName + " wins!";
+        }
+        return "The game ended in a draw!";
+    }
+}
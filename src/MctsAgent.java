@@ -0,0 +1,496 @@
+import java.util.SplittableRandom;
+
+/**
+ * An agent that picks moves with Monte Carlo Tree Search.
+ *
+ * Each iteration walks down the tree choosing children by UCT, adds one new child, finishes
+ * the game from there with random moves (a playout), and credits the result to every node on
+ * the way back up. After the budget is spent, the most visited move is played. The budget is
+ * a number of playouts, a time limit, or both.
+ *
+ * The tree is kept between moves: after the agent plays, the subtree under its move becomes
+ * the new tree, and on the next turn the subtree under the opponent's reply is picked out, so
+ * the playouts already spent on that line are not wasted.
+ *
+ * With pondering turned on, the agent also keeps running playouts on the kept tree while the
+ * opponent is thinking, on a background thread, so the subtree of the opponent's reply has
+ * already grown by the time the agent is asked to move again.
+ *
+ * Each new leaf normally gets one playout. With setLeafPlayouts(), it gets a batch of them
+ * instead, run by a BatchPlayouts and backed up as one result, which trades a smaller tree for
+ * more playouts in the same time.
+ */
+public class MctsAgent extends Agent implements Seedable, Shutdownable
+{
+    public static final int DEFAULT_PLAYOUTS = 20000;     // playouts per move if no budget is given
+    public static final double EXPLORATION = Math.sqrt(2);  // the UCT exploration weight
+    public static final int PONDER_BUDGET_FACTOR = 10;  // pondering gives up after this many move budgets
+
+    protected int playoutBudget;            // playouts per move, or 0 for no limit
+    protected long timeLimitMillis;         // time per move in milliseconds, or 0 for no limit
+    protected SplittableRandom random;      // picks the moves of the playouts
+    protected MctsNode root;                // the tree kept from the last move, or null
+    protected Connect4Position rootPosition;  // the position at the root of the kept tree
+    protected int lastPlayouts;             // the number of playouts run on the last move
+    protected int lastReusedPlayouts;       // the number of playouts kept from earlier moves on the last move
+    protected boolean ponder;               // whether to run playouts while the opponent is thinking
+    protected int leafPlayouts;             // the playouts run from each new leaf, 1 unless batched
+    private volatile boolean stopPonder;    // set to end the pondering playouts
+    private Thread ponderThread;            // runs the pondering playouts, or null
+    private int lastPonderPlayouts;         // the playouts run during the opponent's last turn
+
+    /**
+     * Constructs a new agent that runs DEFAULT_PLAYOUTS playouts per move.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public MctsAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_PLAYOUTS, 0);
+    }
+
+    /**
+     * Constructs a new agent with a given budget per move. The search stops as soon as either
+     * limit is reached; a limit of 0 means that limit does not apply. If both are 0,
+     * DEFAULT_PLAYOUTS is used.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param playoutBudget The number of playouts per move, or 0 for no limit.
+     * @param timeLimitMillis The time per move in milliseconds, or 0 for no limit.
+     */
+    public MctsAgent(Connect4Game game, boolean iAmRed, int playoutBudget, long timeLimitMillis)
+    {
+        super(game, iAmRed);
+        this.playoutBudget = playoutBudget <= 0 && timeLimitMillis <= 0 ? DEFAULT_PLAYOUTS : Math.max(0, playoutBudget);
+        this.timeLimitMillis = Math.max(0, timeLimitMillis);
+        this.random = new SplittableRandom();
+        this.leafPlayouts = 1;
+    }
+
+    /**
+     * Restarts the random moves of the playouts from a seed.
+     *
+     * @param seed the seed.
+     */
+    public void setSeed(long seed)
+    {
+        stopPondering();
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Stops pondering on the last game and forgets the kept tree.
+     */
+    public void newGame()
+    {
+        stopPondering();
+        root = null;
+        rootPosition = null;
+    }
+
+    /**
+     * Searches until the budget is spent and plays the most visited move.
+     */
+    public void move()
+    {
+        stopPondering();
+        Connect4Position position = myGame.getPosition();
+        position.setRedToMove(iAmRed);
+        reuseTree(position);
+        lastReusedPlayouts = root.getVisits();
+        lastPlayouts = search(System.nanoTime() + timeLimitMillis * 1000000L);
+        MctsNode best = root.mostVisitedChild();
+        if (best != null)
+        {
+            moveOnColumn(best.getMove());
+            boolean won = rootPosition.isWinningMove(best.getMove());
+            // keep the subtree under the move just played for the next turn
+            rootPosition.play(best.getMove());
+            root = best;
+            root.detach();
+            if (ponder && !won && !rootPosition.isFull())
+            {
+                startPondering();
+            }
+        }
+    }
+
+    /**
+     * Start running playouts on the kept tree, where the opponent is to move, on a background
+     * thread. They stop on their own after PONDER_BUDGET_FACTOR move budgets, so an agent
+     * whose game has ended doesn't search forever.
+     */
+    private void startPondering()
+    {
+        long deadline = System.nanoTime() + PONDER_BUDGET_FACTOR * timeLimitMillis * 1000000L;
+        long budget = (long) PONDER_BUDGET_FACTOR * playoutBudget;
+        Connect4Position start = new Connect4Position(rootPosition);
+        SplittableRandom ponderRandom = random.split();
+        BatchPlayouts ponderBatch = newBatch(ponderRandom);
+        stopPonder = false;
+        ponderThread = new Thread(() -> {
+            Connect4Position scratch = new Connect4Position(start);
+            int playouts = 0;
+            int iterations = 0;
+            while (!stopPonder && (budget == 0 || playouts < budget))
+            {
+                if (timeLimitMillis > 0 && (iterations & 63) == 0 && System.nanoTime() - deadline > 0)
+                {
+                    break;
+                }
+                scratch.copyFrom(start);
+                playouts += iterate(scratch, ponderRandom, ponderBatch);
+                iterations++;
+            }
+            lastPonderPlayouts = playouts;
+        }, "MctsAgent ponder");
+        ponderThread.setDaemon(true);   // don't keep the program running after the game
+        ponderThread.start();
+    }
+
+    /**
+     * Stop the playouts running during the opponent's turn, if there are any, and wait for
+     * them to finish. The tree they grew is kept for the next move.
+     */
+    public void stopPondering()
+    {
+        if (ponderThread == null)
+        {
+            return;
+        }
+        stopPonder = true;
+        try
+        {
+            ponderThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+    }
+
+    /**
+     * Stops the playouts running during the opponent's turn, if there are any. The agent can't
+     * move after this.
+     */
+    public void shutdown()
+    {
+        stopPondering();
+    }
+
+    /**
+     * Turn pondering, running playouts during the opponent's turn, on or off. Turning it off
+     * stops any playouts that are running.
+     *
+     * @param enabled true to ponder.
+     */
+    public void setPondering(boolean enabled)
+    {
+        ponder = enabled;
+        if (!enabled)
+        {
+            stopPondering();
+        }
+    }
+
+    /**
+     * Get the number of playouts run during the opponent's last turn.
+     *
+     * @return the pondering playouts, or 0 if there were none.
+     */
+    public int getLastPonderPlayouts()
+    {
+        return lastPonderPlayouts;
+    }
+
+    /**
+     * Set how many playouts to run from each new leaf. With more than one, they are run
+     * together by a BatchPlayouts, so the walk down the tree and the new node are shared by
+     * the whole batch, and the playout budget counts every playout in it.
+     *
+     * That pays off when the time per move is short. Against the same agent with single
+     * playouts, on the standard board, a batch of 4 scored 75-80% at 20 ms per move; at 100 ms a
+     * batch of 2 scored 58% and a batch of 4 about even, and a batch of 8 lost (36%), since the
+     * tree then grows too slowly. With a playout budget instead of a time limit, batching only
+     * makes the tree smaller.
+     *
+     * @param count the playouts per leaf; 1, the default, runs a single playout.
+     */
+    public void setLeafPlayouts(int count)
+    {
+        leafPlayouts = Math.max(1, count);
+    }
+
+    /**
+     * Get the number of playouts run from each new leaf.
+     *
+     * @return the playouts per leaf.
+     */
+    public int getLeafPlayouts()
+    {
+        return leafPlayouts;
+    }
+
+    /**
+     * Make the playout engine for one thread's leaf batches.
+     *
+     * @param random the random numbers for that thread.
+     * @return the engine, or null if each leaf gets a single playout.
+     */
+    protected BatchPlayouts newBatch(SplittableRandom random)
+    {
+        if (leafPlayouts <= 1)
+        {
+            return null;
+        }
+        return new BatchPlayouts(rootPosition.getColumnCount(), rootPosition.getRowCount(), leafPlayouts, random);
+    }
+
+    /**
+     * Point the root at the current position, keeping the part of the old tree that is still
+     * reachable. If the opponent has made exactly one move since this agent last moved, and
+     * that move was already in the tree, its subtree becomes the new tree; otherwise a new tree
+     * is started.
+     *
+     * @param position the current position, with this agent to move.
+     */
+    protected void reuseTree(Connect4Position position)
+    {
+        MctsNode reused = null;
+        if (root != null && rootPosition.getColumnCount() == position.getColumnCount()
+            && rootPosition.getRowCount() == position.getRowCount())
+        {
+            long added = position.getOccupiedMask() & ~rootPosition.getOccupiedMask();
+            if (Long.bitCount(added) == 1)
+            {
+                int column = Long.numberOfTrailingZeros(added) / (position.getRowCount() + 1);
+                if (rootPosition.canPlay(column) && root.getChild(column) != null)
+                {
+                    rootPosition.play(column);
+                    if (rootPosition.getOccupiedMask() == position.getOccupiedMask()
+                        && rootPosition.getCurrentMask() == position.getCurrentMask()
+                        && rootPosition.getRedToMove() == position.getRedToMove())
+                    {
+                        reused = root.getChild(column);
+                        reused.detach();
+                    }
+                }
+            }
+        }
+        root = reused != null ? reused : new MctsNode(null, -1, position, false);
+        rootPosition = new Connect4Position(position);
+    }
+
+    /**
+     * Run playouts from the root until the budget is spent.
+     *
+     * @param deadline the System.nanoTime() at which to stop, if there is a time limit.
+     * @return the number of playouts run.
+     */
+    protected int search(long deadline)
+    {
+        Connect4Position scratch = new Connect4Position(rootPosition);
+        BatchPlayouts batch = newBatch(random);
+        int playouts = 0;
+        int iterations = 0;
+        while (playoutBudget == 0 || playouts < playoutBudget)
+        {
+            if (timeLimitMillis > 0 && (iterations & 63) == 0 && iterations > 0 && System.nanoTime() - deadline > 0)
+            {
+                break;
+            }
+            scratch.copyFrom(rootPosition);
+            playouts += iterate(scratch, random, batch);
+            iterations++;
+        }
+        return playouts;
+    }
+
+    /**
+     * Run one iteration: select, expand, play out and back up. Every node on the way down
+     * holds a virtual loss until the result is backed up, so this is safe to run on several
+     * threads over the same tree. If the iteration fails before it has a result, the virtual
+     * losses are taken back, so they don't stay on the tree that is kept for later moves.
+     *
+     * @param position a copy of the root position, which is changed as the tree is walked.
+     * @param random the random numbers for this thread.
+     * @param batch runs this thread's leaf batches, or null for a single playout per leaf.
+     * @return the number of playouts backed up.
+     */
+    protected int iterate(Connect4Position position, SplittableRandom random, BatchPlayouts batch)
+    {
+        MctsNode node = root;     // the deepest node holding a virtual loss
+        node.addVirtualLoss();
+        long halfPoints = 0;      // twice the value of the playouts to the player who moved into node
+        int playouts = 1;
+        boolean finished = false; // whether halfPoints holds the value to back up
+        try
+        {
+            while (true)
+            {
+                // selection
+                while (!node.isTerminal() && node.isFullyExpanded())
+                {
+                    MctsNode child = node.selectChild(EXPLORATION);
+                    child.addVirtualLoss();
+                    node = child;
+                    position.play(node.getMove());
+                }
+                if (node.isTerminal())
+                {
+                    halfPoints = Math.round(node.getTerminalValue() * 2);
+                    break;
+                }
+                // expansion
+                int column = randomUnexpandedColumn(node, position, random);
+                if (column < 0)
+                {
+                    continue;   // other threads expanded the last columns first
+                }
+                boolean won = position.isWinningMove(column);
+                position.play(column);
+                MctsNode child = node.addChild(column, new MctsNode(node, column, position, won));
+                child.addVirtualLoss();
+                node = child;
+                if (node.isTerminal())
+                {
+                    halfPoints = Math.round(node.getTerminalValue() * 2);
+                }
+                else if (batch != null)
+                {
+                    batch.run(position, leafPlayouts);   // counted for the player to move, the other one
+                    halfPoints = 2 * batch.getLosses() + batch.getDraws();
+                    playouts = leafPlayouts;
+                }
+                else
+                {
+                    halfPoints = Math.round(playout(position, random) * 2);
+                }
+                break;
+            }
+            finished = true;
+        }
+        finally
+        {
+            for (MctsNode held = node; !finished && held != null; held = held.getParent())
+            {
+                held.removeVirtualLoss();
+            }
+        }
+        // backpropagation
+        for (; node != null; node = node.getParent())
+        {
+            node.update(halfPoints, playouts);
+            node.removeVirtualLoss();
+            halfPoints = 2L * playouts - halfPoints;
+        }
+        return playouts;
+    }
+
+    /**
+     * Pick a random playable column that has no child yet.
+     *
+     * @param node a node that is not fully expanded.
+     * @param position the position at that node.
+     * @param random the random numbers for this thread.
+     * @return the column to expand, or -1 if every column has a child after all.
+     */
+    protected int randomUnexpandedColumn(MctsNode node, Connect4Position position, SplittableRandom random)
+    {
+        int columns = position.getColumnCount();
+        int start = random.nextInt(columns);
+        for (int i = 0; i < columns; i++)
+        {
+            int column = (start + i) % columns;
+            if (position.canPlay(column) && node.getChild(column) == null)
+            {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finish the game with random moves, except that a player who can win immediately does.
+     *
+     * @param position the position to play out from; it is changed.
+     * @param random the random numbers for this thread.
+     * @return the value of the result to the player who made the last move before the playout.
+     */
+    protected double playout(Connect4Position position, SplittableRandom random)
+    {
+        int columns = position.getColumnCount();
+        boolean leafPlayerToMove = false;   // whether the player who moved into the leaf is to move
+        while (!position.isFull())
+        {
+            if (position.canWinNext())
+            {
+                return leafPlayerToMove ? 1 : 0;
+            }
+            int column = random.nextInt(columns);
+            while (!position.canPlay(column))
+            {
+                column = random.nextInt(columns);
+            }
+            position.play(column);
+            leafPlayerToMove = !leafPlayerToMove;
+        }
+        return 0.5;
+    }
+
+    /**
+     * Drops a token into a particular column so that it will fall to the bottom of the column.
+     * If the column is already full, nothing will change.
+     *
+     * @param columnNumber The column into which to drop the token.
+     */
+    public void moveOnColumn(int columnNumber)
+    {
+        Connect4Column column = myGame.getColumn(columnNumber);
+        if (column != null && !column.getIsFull())
+        {
+            Connect4Slot slot = column.getSlot(column.getNextFreeRow());
+            if (iAmRed)
+            {
+                slot.addRed();
+            }
+            else
+            {
+                slot.addYellow();
+            }
+        }
+    }
+
+    /**
+     * Get the number of playouts run on the last move.
+     *
+     * @return the playout count of the last search.
+     */
+    public int getLastPlayouts()
+    {
+        return lastPlayouts;
+    }
+
+    /**
+     * Get the number of playouts the last move started with, kept from earlier moves.
+     *
+     * @return the visit count of the reused tree at the start of the last search.
+     */
+    public int getLastReusedPlayouts()
+    {
+        return lastReusedPlayouts;
+    }
+
+    /**
+     * Returns the name of this agent.
+     *
+     * @return the agent's name
+     */
+    public String getName()
+    {
+        return "MCTS Agent";
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * One node of a Monte Carlo search tree, standing for the position reached by playing a move.
+ *
+ * A node counts how many playouts went through it and how much they were worth to the player
+ * who played its move: 1 for a win, 0.5 for a draw and 0 for a loss. Children are created one
+ * at a time as the tree grows.
+ *
+ * Several threads may search the same tree at once without locks. The counters are updated
+ * atomically, and the value is kept in half points so that it can be added to exactly. A
+ * child is added with a compare-and-set, so if two threads expand the same column, one of
+ * them gets the other's child back and uses that instead. While a thread is below a node, it
+ * holds a virtual loss on it: the node looks as if it had one more playout that was lost,
+ * which steers the other threads down different paths until the real result comes back.
+ */
+public class MctsNode
+{
+    private static final AtomicIntegerFieldUpdater<MctsNode> UNEXPANDED =
+        AtomicIntegerFieldUpdater.newUpdater(MctsNode.class, "unexpanded");
+    private static final AtomicIntegerFieldUpdater<MctsNode> VISITS =
+        AtomicIntegerFieldUpdater.newUpdater(MctsNode.class, "visits");
+    private static final AtomicIntegerFieldUpdater<MctsNode> VIRTUAL_LOSSES =
+        AtomicIntegerFieldUpdater.newUpdater(MctsNode.class, "virtualLosses");
+    private static final AtomicLongFieldUpdater<MctsNode> HALF_POINTS =
+        AtomicLongFieldUpdater.newUpdater(MctsNode.class, "halfPoints");
+
+    private volatile MctsNode parent;       // the node this one was expanded from, or null at the root
+    private volatile int move;              // the column played to reach this node, or -1 at the root
+    private AtomicReferenceArray<MctsNode> children;  // the child for each column, or null if not expanded yet
+    private volatile int unexpanded;        // the number of playable columns without a child
+    private boolean terminal;               // whether the game is over at this node
+    private double terminalValue;           // if terminal, the value of the game to the player who moved here
+    private volatile int visits;            // the number of playouts through this node
+    private volatile int virtualLosses;     // the number of threads searching below this node right now
+    private volatile long halfPoints;       // twice the total value of those playouts to the player who moved here
+
+    /**
+     * Creates a node for a position.
+     *
+     * @param parent the node this one is expanded from, or null for a root.
+     * @param move the column played to reach this node, or -1 for a root.
+     * @param position the position at this node.
+     * @param won whether the move into this node won the game.
+     */
+    public MctsNode(MctsNode parent, int move, Connect4Position position, boolean won)
+    {
+        this.parent = parent;
+        this.move = move;
+        this.terminal = won || position.isFull();
+        this.terminalValue = won ? 1 : 0.5;
+        this.children = new AtomicReferenceArray<MctsNode>(position.getColumnCount());
+        if (!terminal)
+        {
+            for (int i = 0; i < children.length(); i++)
+            {
+                if (position.canPlay(i))
+                {
+                    unexpanded++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the parent of this node.
+     *
+     * @return the parent, or null at the root.
+     */
+    public MctsNode getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Make this node the root of its tree, so the nodes above it can be garbage collected.
+     */
+    public void detach()
+    {
+        parent = null;
+        move = -1;
+    }
+
+    /**
+     * Get the column played to reach this node.
+     *
+     * @return the column, or -1 at the root.
+     */
+    public int getMove()
+    {
+        return move;
+    }
+
+    /**
+     * Get the child for a column.
+     *
+     * @param column the column.
+     * @return the child, or null if it has not been expanded.
+     */
+    public MctsNode getChild(int column)
+    {
+        return children.get(column);
+    }
+
+    /**
+     * Add a child for a column that has not been expanded yet. If another thread has added a
+     * child for the column first, that one is kept.
+     *
+     * @param column the column.
+     * @param child the child node.
+     * @return the child now in the tree for the column: the given one, or the one added first.
+     */
+    public MctsNode addChild(int column, MctsNode child)
+    {
+        if (children.compareAndSet(column, null, child))
+        {
+            UNEXPANDED.decrementAndGet(this);
+            return child;
+        }
+        return children.get(column);
+    }
+
+    /**
+     * Check whether every playable column has a child.
+     *
+     * @return true if there is nothing left to expand.
+     */
+    public boolean isFullyExpanded()
+    {
+        return unexpanded == 0;
+    }
+
+    /**
+     * Check whether the game is over at this node.
+     *
+     * @return true if the move into this node won or filled the board.
+     */
+    public boolean isTerminal()
+    {
+        return terminal;
+    }
+
+    /**
+     * Get the value of the finished game at a terminal node.
+     *
+     * @return 1 if the player who moved here won, 0.5 for a draw.
+     */
+    public double getTerminalValue()
+    {
+        return terminalValue;
+    }
+
+    /**
+     * Get the number of playouts through this node.
+     *
+     * @return the visit count.
+     */
+    public int getVisits()
+    {
+        return visits;
+    }
+
+    /**
+     * Get the average value of the playouts through this node to the player who moved here.
+     *
+     * @return the mean value, from 0 to 1.
+     */
+    public double getMeanValue()
+    {
+        int n = visits;
+        return n == 0 ? 0 : halfPoints / (2.0 * n);
+    }
+
+    /**
+     * Record a playout through this node.
+     *
+     * @param result the value of the playout to the player who moved into this node: 0, 0.5 or 1.
+     */
+    public void update(double result)
+    {
+        HALF_POINTS.addAndGet(this, Math.round(result * 2));
+        VISITS.incrementAndGet(this);
+    }
+
+    /**
+     * Record several playouts through this node at once.
+     *
+     * @param halfPoints twice the total value of the playouts to the player who moved into
+     *                   this node, counting 2 for a win and 1 for a draw.
+     * @param playouts the number of playouts.
+     */
+    public void update(long halfPoints, int playouts)
+    {
+        HALF_POINTS.addAndGet(this, halfPoints);
+        VISITS.addAndGet(this, playouts);
+    }
+
+    /**
+     * Count this node as lost once more while a thread searches below it, so that other threads
+     * are less likely to choose it. Each call must be matched by removeVirtualLoss().
+     */
+    public void addVirtualLoss()
+    {
+        VIRTUAL_LOSSES.incrementAndGet(this);
+    }
+
+    /**
+     * Take back a virtual loss once the thread that added it has its result.
+     */
+    public void removeVirtualLoss()
+    {
+        VIRTUAL_LOSSES.decrementAndGet(this);
+    }
+
+    /**
+     * Pick the child with the highest UCT score: its mean value plus an exploration bonus that
+     * shrinks as it is visited more. Virtual losses count as visits with no value.
+     *
+     * @param exploration the weight of the exploration bonus.
+     * @return the chosen child, or null if there are no children.
+     */
+    public MctsNode selectChild(double exploration)
+    {
+        MctsNode best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        double logVisits = Math.log(Math.max(1, visits + virtualLosses));
+        for (int i = 0; i < children.length(); i++)
+        {
+            MctsNode child = children.get(i);
+            if (child != null)
+            {
+                int n = Math.max(1, child.visits + child.virtualLosses);
+                double score = child.halfPoints / (2.0 * n) + exploration * Math.sqrt(logVisits / n);
+                if (score > bestScore)
+                {
+                    bestScore = score;
+                    best = child;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Pick the child that was visited the most, which is the move to play.
+     *
+     * @return the most visited child, or null if there are no children.
+     */
+    public MctsNode mostVisitedChild()
+    {
+        MctsNode best = null;
+        for (int i = 0; i < children.length(); i++)
+        {
+            MctsNode child = children.get(i);
+            if (child != null && (best == null || child.visits > best.visits))
+            {
+                best = child;
+            }
+        }
+        return best;
+    }
+}
@@ -1,6 +1,6 @@
 import java.util.Random;
 
-public class MyAgent extends Agent
+public class MyAgent extends Agent implements Seedable
 {
     Random r;
     
@@ -21,6 +21,17 @@ public class MyAgent extends Agent
         rowCount = myGame.getRowCount();
     }
 
+    /**
+     * Restarts the agent's random moves from a seed, so that a game can be played again
+     * exactly.
+     * 
+     * @param seed the seed.
+     */
+    public void setSeed(long seed)
+    {
+        r.setSeed(seed);
+    }
+
     /**
      * The move method is run every time it is this agent's turn in the game.  
      * Will attempt to win the game if possible, then block if possible, 
@@ -87,15 +98,7 @@ public class MyAgent extends Agent
      * @return the index of the top empty slot in a particular column; -1 if the column is already full.
      */
     public int getLowestEmptyIndex(Connect4Column column) {
-        int lowestEmptySlot = -1;
-        for  (int i = 0; i < rowCount; i++)
-        {
-            if (!column.getSlot(i).getIsFilled())
-            {
-                lowestEmptySlot = i;
-            }
-        }
-        return lowestEmptySlot;
+        return column.getNextFreeRow();
     }
     
     /**
@@ -199,215 +202,29 @@ public class MyAgent extends Agent
     }
     
     /**
-     * Returns the column that would allow the agent to win.  Looks for vertical wins first
-     * then for wins to the right and finall wins to the left.
+     * Returns the column that would allow the agent to win.  Looks up the winning lines through
+     * the lowest empty slot of each column and checks whether any of them already holds three tokens.
      *
      * @param myWin true if the win being checked is for this agent, false if the win being checked is for the opponent.
      * @return the column that would allow the agent to win.  Returns -1 if no such move exists.
      */
     public int canWin(boolean myWin)
     {
-        //Vertical look - Checks to see if there is a possible vertical win
-        for(int col = 0; col < columnCount; col++)  //Cycle through each column
+        WinningLines lines = WinningLines.forSize(columnCount, rowCount); //Every line of four on the board
+        long tokens = myGame.getRedMask(); //The red tokens
+        if (iAmRed != myWin) //If the win being checked is yellow's
         {
-            int lowestEmpty = getLowestEmptyIndex(myGame.getColumn(col));  //The lowest empty spot in the column
-            Connect4Slot top = myGame.getColumn(col).getSlot(lowestEmpty + 1); //The top slot in the column
-            Connect4Slot second = myGame.getColumn(col).getSlot(lowestEmpty + 2); //The second to last slot in the column
-            Connect4Slot third = myGame.getColumn(col).getSlot(lowestEmpty + 3); //The last slot in the column
-            if (iAmRed && myWin || !iAmRed && !myWin) //If i'm the red player
-            {
-                if(lowestEmpty > 0 && top != null && second != null && third != null //If the column is not empty, the top, second, and third values are not empty and the top three slots are red
-                    && top.getIsRed()
-                    && second.getIsRed()
-                    && third.getIsRed())
-                {
-                    return col;  //Return this column
-                }
-            }  
-            else //I'm the yellow player
-            {
-                if(lowestEmpty > 0 && top != null && second != null && third != null //If the column is not empty, the top, second, and third values are not empty and the top three slots are yellow
-                    && top.getIsYellow()
-                    && second.getIsYellow()
-                    && third.getIsYellow())
-                    {
-                    return col; //Return this column
-                    }
-            }
-        }    
-        
-        //Horizontal look - Checks to see if there is a possible horizontal win to the right then the left
-        for(int col = 0; col < columnCount; col++)  //Cycle through each column
-        {
-            int lowestEmpty = getLowestEmptyIndex(myGame.getColumn(col)); //The lowest empty spot in the column
-            //Check Right
-            if(col + 3 < columnCount && lowestEmpty != -1)  //If there are three columns to the right and this column is not full
-            {
-                Connect4Slot oneRight = myGame.getColumn(col + 1).getSlot(lowestEmpty); //The first column to the right
-                Connect4Slot twoRight = myGame.getColumn(col + 2).getSlot(lowestEmpty); //The second column to the right
-                Connect4Slot threeRight = myGame.getColumn(col + 3).getSlot(lowestEmpty); //The third column to the right
-                if (iAmRed && myWin || !iAmRed & !myWin)  //If i'm the red player
-                {
-                    if(oneRight.getIsRed() //If the three columns to the right are red and not empty
-                        &&twoRight.getIsRed()
-                        &&threeRight.getIsRed()
-                        &&oneRight != null
-                        &&twoRight != null
-                        &&threeRight != null)
-                    {
-                        return col; //Return this column
-                    }
-                }
-                else //I'm the yellow player
-                {
-                    if(oneRight.getIsYellow() //If the three columns to the right are yellow and not empty
-                        &&twoRight.getIsYellow()
-                        &&threeRight.getIsYellow()
-                        &&oneRight != null
-                        &&twoRight != null
-                        &&threeRight != null)
-                    {
-                        return col; //Return this column
-                    }
-                }
-            }
-            //Check Left
-            if(col - 3 > 0 && lowestEmpty != -1) //If there are three columns to the left and this column is not full
-            {
-                Connect4Slot oneLeft = myGame.getColumn(col - 1).getSlot(lowestEmpty); //The first column to the left
-                Connect4Slot twoLeft = myGame.getColumn(col - 2).getSlot(lowestEmpty); //The second column to the left
-                Connect4Slot threeLeft = myGame.getColumn(col - 3).getSlot(lowestEmpty); //The third column to the left
-                if (iAmRed && myWin || !iAmRed && !myWin) //If i'm the red player
-                {
-                    if(oneLeft.getIsRed()  //If the three columns to the left are red and they are not empty
-                        &&twoLeft.getIsRed()
-                        &&threeLeft.getIsRed()
-                        &&oneLeft != null
-                        &&twoLeft != null
-                        &&threeLeft != null)
-                    {
-                        return col; //Return this column
-                    }
-                }
-                else //I'm the yellow player
-                {
-                    if(oneLeft.getIsYellow() //If the three columns to the left are yellow and they are not empty
-                        &&twoLeft.getIsYellow()
-                        &&threeLeft.getIsYellow()
-                        &&oneLeft != null
-                        &&twoLeft != null
-                        &&threeLeft != null)
-                    {
-                        return col; //Return this column
-                    }
-                }
-            }
+            tokens ^= myGame.getOccupiedMask(); //The yellow tokens
         }
-        //Diagonal look - Checks to see if there is a possible diagonal win to the left and down, left and up, right and down, then right and up
         for(int col = 0; col < columnCount; col++)  //Cycle through each column
         {
-           int lowestEmpty = getLowestEmptyIndex(myGame.getColumn(col)); //The lowest empty spot in the column
-           //Diagonal to the left look
-           if(col - 3 >= 0 && lowestEmpty != -1) //If there are three columns to the left and this column is not full look to the left
+            int lowestEmpty = getLowestEmptyIndex(myGame.getColumn(col));  //The lowest empty spot in the column
+            if(lowestEmpty != -1 && lines.completesLine(tokens, col, lowestEmpty)) //If the column is not full and a token there makes four in a row
             {
-                Connect4Slot oneDownLeft = myGame.getColumn(col - 1).getSlot(lowestEmpty + 1); //The first column to the left and down
-                Connect4Slot twoDownLeft = myGame.getColumn(col - 2).getSlot(lowestEmpty + 2); //The second column to the left and down
-                Connect4Slot threeDownLeft = myGame.getColumn(col - 3).getSlot(lowestEmpty + 3); //The third column to the left and down
-                Connect4Slot oneUpLeft = myGame.getColumn(col - 1).getSlot(lowestEmpty - 1); //The first column to the left and down
-                Connect4Slot twoUpLeft = myGame.getColumn(col - 2).getSlot(lowestEmpty - 2); //The second column to the left and down
-                Connect4Slot threeUpLeft = myGame.getColumn(col - 3).getSlot(lowestEmpty - 3); //The third column to the left and down
-                if (iAmRed && myWin || !iAmRed && !myWin) //If i'm the red player
-                {
-                    if((oneDownLeft != null //If the three columns to the left and down/up are red and they are not empty
-                        &&twoDownLeft != null
-                        &&threeDownLeft != null
-                        &&oneDownLeft.getIsRed()  
-                        &&twoDownLeft.getIsRed()
-                        &&threeDownLeft.getIsRed())
-                        ||
-                        (oneUpLeft != null
-                        &&twoUpLeft != null
-                        &&threeUpLeft != null
-                        &&oneUpLeft.getIsRed()  //If the three columns to the left an up are red and they are not empty
-                        &&twoUpLeft.getIsRed()
-                        &&threeUpLeft.getIsRed()))
-                        
-                    {
-                        return col; //Return this column
-                    }
-                }
-                else //I'm the yellow player
-                {
-                    if((oneDownLeft != null //If the three columns to the left and down/up are yellow and they are not empty
-                        &&twoDownLeft != null
-                        &&threeDownLeft != null
-                        &&oneDownLeft.getIsYellow()  
-                        &&twoDownLeft.getIsYellow()
-                        &&threeDownLeft.getIsYellow())
-                        ||
-                        (oneUpLeft != null
-                        &&twoUpLeft != null
-                        &&threeUpLeft != null
-                        &&oneUpLeft.getIsYellow()  //If the three columns to the left and down are yellow and they are not empty
-                        &&twoUpLeft.getIsYellow()
-                        &&threeUpLeft.getIsYellow()))
-                    {
-                        return col; //Return this column
-                    }
-                }
-           }
-           //Diagonal to the right look
-           if(col + 3 < columnCount && lowestEmpty != -1) //If there are three columns to the right and this column is not full look to the right
-           {
-               Connect4Slot oneDownRight = myGame.getColumn(col + 1).getSlot(lowestEmpty + 1); //The first column to the left and down
-               Connect4Slot twoDownRight = myGame.getColumn(col + 2).getSlot(lowestEmpty + 2); //The second column to the left and down
-               Connect4Slot threeDownRight = myGame.getColumn(col + 3).getSlot(lowestEmpty + 3); //The third column to the left and down
-               Connect4Slot oneUpRight = myGame.getColumn(col + 1).getSlot(lowestEmpty - 1); //The third column to the left and down
-               Connect4Slot twoUpRight = myGame.getColumn(col + 2).getSlot(lowestEmpty - 2); //The third column to the left and down
-               Connect4Slot threeUpRight = myGame.getColumn(col + 3).getSlot(lowestEmpty - 3); //The third column to the left and down
-               if (iAmRed && myWin || !iAmRed && !myWin) //If i'm the red player
-               {
-                   if((oneDownRight != null
-                       &&twoDownRight != null
-                       &&threeDownRight != null
-                       &&oneDownRight.getIsRed()  //If the three columns to the right and down/up are red and they are not empty
-                       &&twoDownRight.getIsRed()
-                       &&threeDownRight.getIsRed())
-                       ||
-                       (oneUpRight != null
-                       &&twoUpRight != null
-                       &&threeUpRight != null
-                       &&oneUpRight.getIsRed()  //If the three columns to the right and down/up are red and they are not empty
-                       &&twoUpRight.getIsRed()
-                       &&threeUpRight.getIsRed()))
-                       
-                   {
-                       return col; //Return this column
-                   }
-               }
-               else //I'm the yellow player
-               {
-                   if((oneDownRight != null
-                       &&twoDownRight != null
-                       &&threeDownRight != null
-                       &&oneDownRight.getIsYellow()  //If the three columns to the right and down/up are yellow and they are not empty
-                       &&twoDownRight.getIsYellow()
-                       &&threeDownRight.getIsYellow())
-                       ||
-                       (oneUpRight != null
-                       &&twoUpRight != null
-                       &&threeUpRight != null
-                       &&oneUpRight.getIsRed()  //If the three columns to the right and down/up are yellow and they are not empty
-                       &&twoUpRight.getIsRed()
-                       &&threeUpRight.getIsYellow()))
-                   {
-                       return col; //Return this column
-                   }
-               }
+                return col;  //Return this column
             }
         }
-        
-       return -1; //There are no possible wins at this time
+        return -1; //There are no possible wins at this time
     }
      
     /**
@@ -0,0 +1,186 @@
+/**
+ * An agent that looks a fixed number of moves ahead with a negamax alpha-beta search.
+ *
+ * The search runs on a Connect4Position copied from the game, so it never walks the
+ * Connect4Slots; only the chosen move is placed on the real board. Results are cached in a
+ * TranspositionTable that is kept from move to move, and emptied by newGame() when a new game
+ * starts.
+ */
+public class NegamaxAgent extends Agent
+{
+    public static final int DEFAULT_DEPTH = 8;  // how far to look ahead if no depth is given
+    public static final int DEFAULT_TABLE_ENTRIES = 1 << 18;  // 4 MB of transposition table
+
+    protected int depth;                    // the number of moves to look ahead
+    protected TranspositionTable table;     // cached search results, kept between moves
+    protected boolean patternEvaluation;    // whether leaves are scored with a PatternEvaluator
+    protected OpeningBook book;             // moves to play without searching, or null
+
+    /**
+     * Constructs a new agent that searches DEFAULT_DEPTH moves ahead.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public NegamaxAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Constructs a new agent that searches a given number of moves ahead.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param depth The number of moves to look ahead; at least 1.
+     */
+    public NegamaxAgent(Connect4Game game, boolean iAmRed, int depth)
+    {
+        this(game, iAmRed, depth, new TranspositionTable(DEFAULT_TABLE_ENTRIES));
+    }
+
+    /**
+     * Constructs a new agent that searches a given number of moves ahead using a given table.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param depth The number of moves to look ahead; at least 1.
+     * @param table The transposition table to cache results in.
+     */
+    public NegamaxAgent(Connect4Game game, boolean iAmRed, int depth, TranspositionTable table)
+    {
+        super(game, iAmRed);
+        this.depth = Math.max(1, depth);
+        this.table = table;
+    }
+
+    /**
+     * Empties the transposition table, so that the agent can start a new game without anything
+     * it stored during the last one changing the moves it picks.
+     */
+    public void newGame()
+    {
+        if (table != null)
+        {
+            table.clear();
+        }
+    }
+
+    /**
+     * Plays the book move if the opening book has the current position, and otherwise searches
+     * the position and drops a token in the best column found.
+     */
+    public void move()
+    {
+        Connect4Position position = createPosition();
+        int column = book == null ? -1 : book.getMove(position);
+        moveOnColumn(column >= 0 ? column : chooseMove(position));
+    }
+
+    /**
+     * Give the agent an opening book to play from. While the game is still in the book, moves
+     * are looked up instead of searched.
+     *
+     * @param book the book, or null to always search.
+     */
+    public void setOpeningBook(OpeningBook book)
+    {
+        this.book = book;
+    }
+
+    /**
+     * Chooses the column to play from a position where this agent is the player to move.
+     *
+     * @param position the position to search; it is not changed.
+     * @return the column to play, or -1 if the board is full.
+     */
+    protected int chooseMove(Connect4Position position)
+    {
+        table.newSearch();
+        return createSearch(position).search(depth);
+    }
+
+    /**
+     * Creates the search for a position, set up the way this agent searches.
+     *
+     * @param position the position to search; it is copied, so it is not changed.
+     * @return a new search of the position.
+     */
+    protected Connect4Search createSearch(Connect4Position position)
+    {
+        Connect4Search search = new Connect4Search(position, table);
+        search.setPatternEvaluation(patternEvaluation);
+        return search;
+    }
+
+    /**
+     * Choose whether the search scores positions with a PatternEvaluator, which is updated
+     * move by move, instead of counting threats. The table is cleared, since scores from
+     * the two evaluations can't be mixed.
+     *
+     * @param enabled true to use the pattern evaluation.
+     */
+    public void setPatternEvaluation(boolean enabled)
+    {
+        if (enabled != patternEvaluation && table != null)
+        {
+            table.clear();
+        }
+        patternEvaluation = enabled;
+    }
+
+    /**
+     * Get the transposition table, for example to check its hit rate.
+     *
+     * @return the table this agent caches results in.
+     */
+    public TranspositionTable getTranspositionTable()
+    {
+        return table;
+    }
+
+    /**
+     * Copies the game into a bitboard position with this agent as the player to move.
+     *
+     * @return the position to search.
+     */
+    protected Connect4Position createPosition()
+    {
+        Connect4Position position = myGame.getPosition();
+        position.setRedToMove(iAmRed);
+        return position;
+    }
+
+    /**
+     * Drops a token into a particular column so that it will fall to the bottom of the column.
+     * If the column is already full, nothing will change.
+     *
+     * @param columnNumber The column into which to drop the token.
+     */
+    public void moveOnColumn(int columnNumber)
+    {
+        Connect4Column column = myGame.getColumn(columnNumber);
+        if (column != null && !column.getIsFull())
+        {
+            Connect4Slot slot = column.getSlot(column.getNextFreeRow());
+            if (iAmRed)
+            {
+                slot.addRed();
+            }
+            else
+            {
+                slot.addYellow();
+            }
+        }
+    }
+
+    /**
+     * Returns the name of this agent.
+     *
+     * @return the agent's name
+     */
+    public String getName()
+    {
+        return "Negamax Agent (depth " + depth + ")";
+    }
+}
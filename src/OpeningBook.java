@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only opening book: the best move and its score for every position of the first few
+ * moves, worked out in advance by OpeningBookBuilder.
+ *
+ * The file is memory-mapped rather than read, so opening a book costs almost nothing and its
+ * entries stay off the heap; the operating system pages them in as they are looked up, and
+ * several agents or programs can share the same pages. Lookups are a binary search over the
+ * sorted keys, so they take microseconds.
+ *
+ * The file starts with a header of six ints: MAGIC, the number of columns, the number of rows,
+ * the number of moves the book covers, the depth its positions were searched to (SOLVED if
+ * they were solved exactly with Connect4Solver), and the number of entries. Then come the
+ * entries, sorted by key, ENTRY_BYTES each: the position's exact key
+ * (Connect4Position.getExactKey()) as a long, then an int holding the score in its upper 24 bits
+ * and the best column in its lower 8. Keys only depend on the tokens of the player to move and
+ * of the other player, not on their colors, so one entry serves both colors.
+ */
+public class OpeningBook
+{
+    public static final int MAGIC = 0x43344F42;     // "C4OB", the first four bytes of every book
+    public static final int HEADER_BYTES = 24;      // six ints
+    public static final int ENTRY_BYTES = 12;       // a long key and an int for the score and move
+    public static final int SOLVED = -1;            // the depth of a book whose scores are exact
+
+    private ByteBuffer entries;     // the mapped entries, read with absolute gets so threads can share them
+    private int columnCount;        // the number of columns of the board the book is for
+    private int rowCount;           // the number of rows of the board the book is for
+    private int maxMoves;           // positions with up to this many tokens are in the book
+    private int depth;              // the depth the positions were searched to
+    private int size;               // the number of entries
+
+    /**
+     * Opens a book file by mapping it into memory.
+     *
+     * @param fileName the file written by OpeningBookBuilder.
+     * @throws IOException if the file can't be read or is not an opening book.
+     */
+    public OpeningBook(String fileName) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+        {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE)
+            {
+                throw new IOException("Not an opening book: " + fileName);
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (map.getInt(0) != MAGIC)
+            {
+                throw new IOException("Not an opening book: " + fileName);
+            }
+            columnCount = map.getInt(4);
+            rowCount = map.getInt(8);
+            maxMoves = map.getInt(12);
+            depth = map.getInt(16);
+            size = map.getInt(20);
+            if (size < 0 || (long) size * ENTRY_BYTES != length - HEADER_BYTES)
+            {
+                throw new IOException("The opening book " + fileName + " is truncated or damaged.");
+            }
+            map.position(HEADER_BYTES);
+            entries = map.slice();
+        }
+    }
+
+    /**
+     * Find the entry for a key.
+     *
+     * @param key the exact key of a position.
+     * @return the index of the entry, or -1 if the key is not in the book.
+     */
+    private int find(long key)
+    {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            long found = entries.getLong(middle * ENTRY_BYTES);
+            if (found < key)
+            {
+                low = middle + 1;
+            }
+            else if (found > key)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the entry for a position, if the book covers it.
+     *
+     * @param position the position to look up.
+     * @return the index of the entry, or -1 if the position is not in the book.
+     */
+    private int find(Connect4Position position)
+    {
+        if (position.getColumnCount() != columnCount || position.getRowCount() != rowCount
+            || position.getMoveCount() > maxMoves)
+        {
+            return -1;
+        }
+        return find(position.getExactKey());
+    }
+
+    /**
+     * Check whether the book has an entry for a position.
+     *
+     * @param position the position to look up.
+     * @return true if the position is in the book.
+     */
+    public boolean contains(Connect4Position position)
+    {
+        return find(position) >= 0;
+    }
+
+    /**
+     * Get the best move for the player to move in a position.
+     *
+     * @param position the position to look up.
+     * @return the column to play, or -1 if the position is not in the book.
+     */
+    public int getMove(Connect4Position position)
+    {
+        int index = find(position);
+        return index < 0 ? -1 : entries.getInt(index * ENTRY_BYTES + 8) & 0xFF;
+    }
+
+    /**
+     * Get the score of the best move in a position, as Connect4Search would give it.
+     *
+     * @param position the position to look up.
+     * @return the score from the point of view of the player to move, or 0 if the position is
+     *         not in the book.
+     */
+    public int getScore(Connect4Position position)
+    {
+        int index = find(position);
+        return index < 0 ? 0 : entries.getInt(index * ENTRY_BYTES + 8) >> 8;
+    }
+
+    /**
+     * Get the number of columns of the board this book is for.
+     *
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Get the number of rows of the board this book is for.
+     *
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Get the number of moves the book covers.
+     *
+     * @return the largest number of tokens on the board of a position in the book.
+     */
+    public int getMaxMoves()
+    {
+        return maxMoves;
+    }
+
+    /**
+     * Get the depth the positions in the book were searched to.
+     *
+     * @return the search depth, or SOLVED if every position was solved exactly.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Get the number of positions in the book.
+     *
+     * @return the number of entries.
+     */
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds an OpeningBook file, offline, before any games are played.
+ *
+ * Every position that can come up in the first few moves of a game is searched to a fixed depth
+ * with Connect4Search, or solved exactly with Connect4Solver, and its best move and score are
+ * written to a sorted binary file that OpeningBook can map straight into memory. Positions that
+ * can be reached by different move orders are only searched once. Building a deep book takes a
+ * while, but it only has to be done once per board size.
+ *
+ * Run it from the command line:
+ *
+ *     java OpeningBookBuilder file [columns rows moves depth]
+ *
+ * where depth is either a number of moves to search ahead, or "solve" to solve every position.
+ */
+public class OpeningBookBuilder
+{
+    public static final int DEFAULT_MOVES = 6;      // positions with up to this many tokens go in the book
+    public static final int DEFAULT_DEPTH = 12;     // how far ahead each position is searched
+    public static final int TABLE_ENTRIES = 1 << 22;  // 64 MB of transposition table, shared by every search
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1 && args.length != 5)
+        {
+            System.err.println("Usage: java OpeningBookBuilder file [columns rows moves depth]");
+            System.exit(2);
+        }
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        int rows = args.length > 1 ? Integer.parseInt(args[2]) : 6;
+        int moves = args.length > 1 ? Integer.parseInt(args[3]) : DEFAULT_MOVES;
+        int depth = args.length == 1 ? DEFAULT_DEPTH
+            : args[4].equals("solve") ? OpeningBook.SOLVED : Integer.parseInt(args[4]);
+        long start = System.nanoTime();
+        int size = build(columns, rows, moves, depth, args[0]);
+        System.out.println("Wrote " + size + " positions to " + args[0] + " in "
+            + (System.nanoTime() - start) / 1000000000L + " s");
+    }
+
+    /**
+     * Search every position of the first moves of a game and write the results to a book file.
+     *
+     * @param numCols the number of columns on the board.
+     * @param numRows the number of rows on the board.
+     * @param maxMoves positions with up to this many tokens are put in the book.
+     * @param depth the number of moves to search ahead from each position, at least 1, or
+     *              OpeningBook.SOLVED to solve each position exactly.
+     * @param fileName the file to write.
+     * @return the number of positions written.
+     * @throws IOException if the file can't be written.
+     */
+    public static int build(int numCols, int numRows, int maxMoves, int depth, String fileName) throws IOException
+    {
+        TranspositionTable table = new TranspositionTable(TABLE_ENTRIES);
+        Connect4Solver solver = depth == OpeningBook.SOLVED ? new Connect4Solver(table) : null;
+        TreeMap<Long, Integer> book = new TreeMap<Long, Integer>();    // sorted the way OpeningBook searches it
+        ArrayList<Connect4Position> level = new ArrayList<Connect4Position>();
+        level.add(new Connect4Position(numCols, numRows));
+        for (int moves = 0; moves <= maxMoves && !level.isEmpty(); moves++)
+        {
+            ArrayList<Connect4Position> next = new ArrayList<Connect4Position>();
+            HashSet<Long> seen = new HashSet<Long>();
+            for (Connect4Position position : level)
+            {
+                int move;
+                int score;
+                if (solver != null)
+                {
+                    move = solver.bestMove(position);
+                    score = solver.getBestScore();
+                }
+                else
+                {
+                    table.newSearch();
+                    Connect4Search search = new Connect4Search(position, table);
+                    move = search.search(depth);
+                    score = search.getBestScore();
+                }
+                if (move < 0)
+                {
+                    continue;   // the board is full
+                }
+                book.put(position.getExactKey(), score << 8 | move);
+                if (moves == maxMoves)
+                {
+                    continue;
+                }
+                for (int column = 0; column < numCols; column++)
+                {
+                    // a move that wins ends the game, so there is nothing to look up after it
+                    if (position.canPlay(column) && !position.isWinningMove(column))
+                    {
+                        Connect4Position child = new Connect4Position(position);
+                        child.play(column);
+                        if (seen.add(child.getExactKey()))
+                        {
+                            next.add(child);
+                        }
+                    }
+                }
+            }
+            System.out.println("Searched " + level.size() + " positions with " + moves + " moves");
+            level = next;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName))))
+        {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(numCols);
+            out.writeInt(numRows);
+            out.writeInt(maxMoves);
+            out.writeInt(depth);
+            out.writeInt(book.size());
+            for (Map.Entry<Long, Integer> entry : book.entrySet())
+            {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        }
+        return book.size();
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An agent that runs Monte Carlo Tree Search on several threads over one shared tree.
+ *
+ * Every thread walks down the same tree, expands it and backs up its own playouts. The nodes
+ * count visits and values with atomic updates, so no locks are taken. A thread leaves a
+ * virtual loss on every node it passes on the way down, which makes that path look worse to
+ * the other threads until its result is in, so they spread out over the tree instead of all
+ * playing out the same line. Each thread has its own random numbers and scratch position, so
+ * the playouts themselves share nothing.
+ *
+ * The playout budget is shared: the threads together run about as many playouts as an
+ * MctsAgent with the same budget, just sooner.
+ */
+public class ParallelMctsAgent extends MctsAgent
+{
+    protected int threadCount;          // the number of threads searching each move
+    private ExecutorService helpers;    // runs the threads other than the caller's
+
+    /**
+     * Constructs a new agent that runs DEFAULT_PLAYOUTS playouts per move on every processor.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public ParallelMctsAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_PLAYOUTS, 0, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new agent with a given budget per move and number of threads. The search
+     * stops as soon as either limit is reached; a limit of 0 means that limit does not apply.
+     * If both are 0, DEFAULT_PLAYOUTS is used.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param playoutBudget The number of playouts per move over all threads, or 0 for no limit.
+     * @param timeLimitMillis The time per move in milliseconds, or 0 for no limit.
+     * @param threadCount The number of threads to search with; at least 1.
+     */
+    public ParallelMctsAgent(Connect4Game game, boolean iAmRed, int playoutBudget, long timeLimitMillis, int threadCount)
+    {
+        super(game, iAmRed, playoutBudget, timeLimitMillis);
+        this.threadCount = Math.max(1, threadCount);
+        if (this.threadCount > 1)
+        {
+            helpers = Executors.newFixedThreadPool(this.threadCount - 1, runnable -> {
+                Thread thread = new Thread(runnable, "ParallelMctsAgent helper");
+                thread.setDaemon(true);     // don't keep the program running after the game
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Run playouts from the root on every thread until the budget is spent. The helpers are
+     * always waited for, even if this thread is interrupted, since they work on the tree that
+     * the move is picked from; the interrupt is kept for the caller.
+     *
+     * @param deadline the System.nanoTime() at which to stop, if there is a time limit.
+     * @return the number of playouts run.
+     * @throws IllegalStateException if a helper thread failed.
+     */
+    protected int search(long deadline)
+    {
+        if (threadCount == 1)
+        {
+            return super.search(deadline);
+        }
+        AtomicInteger claimed = new AtomicInteger();
+        int[] playouts = new int[threadCount];
+        Future<?>[] running = new Future<?>[threadCount];
+        for (int i = 1; i < threadCount; i++)
+        {
+            final int id = i;
+            final SplittableRandom threadRandom = random.split();
+            running[i] = helpers.submit(() -> {
+                playouts[id] = work(deadline, claimed, threadRandom);
+            });
+        }
+        playouts[0] = work(deadline, claimed, random);
+        int total = playouts[0];
+        boolean interrupted = false;
+        Throwable failure = null;     // why the first helper that failed did
+        for (int i = 1; i < threadCount; i++)
+        {
+            boolean done = false;
+            while (!done)
+            {
+                try
+                {
+                    running[i].get();
+                    total += playouts[i];
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                    continue;
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e.getCause();
+                    }
+                }
+                done = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null)
+        {
+            throw new IllegalStateException("A ParallelMctsAgent helper failed", failure);
+        }
+        return total;
+    }
+
+    /**
+     * The loop each thread runs: claim a leaf's playouts from the shared budget and run them.
+     *
+     * @param deadline the System.nanoTime() at which to stop, if there is a time limit.
+     * @param claimed the number of playouts claimed by all threads so far.
+     * @param random the random numbers for this thread.
+     * @return the number of playouts this thread ran.
+     */
+    private int work(long deadline, AtomicInteger claimed, SplittableRandom random)
+    {
+        Connect4Position scratch = new Connect4Position(rootPosition);
+        BatchPlayouts batch = newBatch(random);
+        int playouts = 0;
+        int iterations = 0;
+        while (playoutBudget == 0 || claimed.getAndAdd(leafPlayouts) < playoutBudget)
+        {
+            if (timeLimitMillis > 0 && (iterations & 63) == 0 && iterations > 0 && System.nanoTime() - deadline > 0)
+            {
+                break;
+            }
+            scratch.copyFrom(rootPosition);
+            playouts += iterate(scratch, random, batch);
+            iterations++;
+        }
+        return playouts;
+    }
+
+    /**
+     * Stops the helper threads, and the search during the opponent's turn if there is one.
+     * The agent can't move after this.
+     */
+    public void shutdown()
+    {
+        super.shutdown();
+        if (helpers != null)
+        {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the number of threads this agent searches with.
+     *
+     * @return the number of threads.
+     */
+    public int getThreadCount()
+    {
+        return threadCount;
+    }
+
+    /**
+     * Returns the name of this agent.
+     *
+     * @return the agent's name
+     */
+    public String getName()
+    {
+        return "Parallel MCTS Agent (" + threadCount + " threads)";
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * A position evaluation built from the lines of four, kept up to date one move at a time.
+ *
+ * Every line that holds tokens of only one color counts for that color, more the fuller it is:
+ * a line with one token is worth LINE_WEIGHTS[1], with two LINE_WEIGHTS[2], and so on. A line
+ * with both colors in it can never be completed, so it counts for nobody. The score is the
+ * total for red minus the total for yellow.
+ *
+ * The counts come from LineCounts. When a token is added or removed, only the lines through
+ * its slot change, so the score is patched from their values before and after instead of being
+ * worked out from the whole board. That makes it cheap enough to call at every leaf of a search.
+ */
+public class PatternEvaluator extends LineCounts
+{
+    private static final int[] LINE_WEIGHTS = { 0, 1, 3, 9, 512 };  // the value of a line by its number of tokens
+
+    private int score;      // the total for red minus the total for yellow
+
+    /**
+     * Creates an evaluator for an empty board.
+     *
+     * @param numCols the number of columns on the board.
+     * @param numRows the number of rows on the board.
+     */
+    public PatternEvaluator(int numCols, int numRows)
+    {
+        super(numCols, numRows);
+    }
+
+    /**
+     * Creates an evaluator for the tokens already on the board of a position. The counts are
+     * filled in by LineCounts, and the score is then added up from every line.
+     *
+     * @param position the position to evaluate.
+     */
+    public PatternEvaluator(Connect4Position position)
+    {
+        super(position);
+        for (int line = 0; line < lines.getLineCount(); line++)
+        {
+            score += lineValue(line);
+        }
+    }
+
+    /**
+     * Count a token that has been put into an empty slot, and update the score.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @param red true for a red token, false for a yellow one.
+     */
+    public void add(int column, int row, boolean red)
+    {
+        int[] through = lines.getLinesThrough(column, row);
+        for (int line : through)
+        {
+            score -= lineValue(line);
+        }
+        super.add(column, row, red);
+        for (int line : through)
+        {
+            score += lineValue(line);
+        }
+    }
+
+    /**
+     * Stop counting a token that has been taken out of its slot, and update the score.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @param red true for a red token, false for a yellow one.
+     */
+    public void remove(int column, int row, boolean red)
+    {
+        int[] through = lines.getLinesThrough(column, row);
+        for (int line : through)
+        {
+            score -= lineValue(line);
+        }
+        super.remove(column, row, red);
+        for (int line : through)
+        {
+            score += lineValue(line);
+        }
+    }
+
+    /**
+     * Clear every count and the score, as for an empty board.
+     */
+    public void clear()
+    {
+        super.clear();
+        score = 0;
+    }
+
+    /**
+     * Get the value of one line to red.
+     */
+    private int lineValue(int line)
+    {
+        int red = redCounts[line];
+        int yellow = yellowCounts[line];
+        if (red == 0)
+        {
+            return -LINE_WEIGHTS[yellow];
+        }
+        return yellow == 0 ? LINE_WEIGHTS[red] : 0;
+    }
+
+    /**
+     * Get the score of the position from one player's point of view.
+     *
+     * @param red true for red's point of view, false for yellow's.
+     * @return the evaluation; positive is good for that player.
+     */
+    public int getScore(boolean red)
+    {
+        return red ? score : -score;
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * An agent whose random choices can be made repeatable by giving it a seed.
+ *
+ * Match gives both agents a seed of their own before every game, worked out from the game's
+ * seed, so that a game can be played again move for move from that one number. An agent that
+ * makes random choices should implement this interface and restart all of its randomness from
+ * the seed. Anything else an agent keeps from one game to the next, such as a transposition
+ * table or a search tree, is dropped in Agent.newGame() instead, which Match calls before every
+ * game as well. Agents that stop searching when a time limit runs out can still play
+ * differently from run to run, since how far they get depends on the machine.
+ */
+public interface Seedable
+{
+    /**
+     * Restart the agent's random choices from a seed.
+     *
+     * @param seed the seed.
+     */
+    void setSeed(long seed);
+
+    /**
+     * Give an agent a seed, if it implements Seedable. Agents that don't, such as the built-in
+     * agents that come only as class files, keep making their own random choices, so games
+     * with them can't be played again exactly.
+     *
+     * @param agent the agent to seed.
+     * @param seed the seed.
+     */
+    static void seed(Agent agent, long seed)
+    {
+        if (agent instanceof Seedable)
+        {
+            ((Seedable) agent).setSeed(seed);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * An agent that runs threads of its own, which have to be stopped once it has finished playing.
+ *
+ * The helpers of a LazySmpAgent or a ParallelMctsAgent, the pool of a YoungBrothersAgent and
+ * the background search of an agent that ponders all keep running between moves, so an agent
+ * that is thrown away without being shut down leaves them behind. AgentFactory.release() shuts
+ * down every agent that implements this interface, so a new agent with threads only has to
+ * implement it to be cleaned up after by Tournament, SprtMatch and Simulation.
+ */
+public interface Shutdownable
+{
+    /**
+     * Stop every thread the agent has started and wait for any search on them to finish. The
+     * agent can't be asked to move after this.
+     */
+    void shutdown();
+}
@@ -0,0 +1,477 @@
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs very large batches of games between two agents, each game on a thread of its own.
+ *
+ * On Java 21 and later every game gets a virtual thread, so an agent that sleeps or waits for
+ * its time limit doesn't hold up a processor, and hundreds of thousands of games can be in
+ * progress at once. On older Java versions the games run on a fixed pool of
+ * PLATFORM_THREADS_PER_PROCESSOR platform threads per processor instead, and the same code
+ * still works, with less overlap for agents that wait.
+ *
+ * Two limits keep a batch of millions of games from running away with memory. No more than
+ * maxConcurrentGames games are started before earlier ones finish, and finished games wait in
+ * a queue of resultCapacity results for the caller to take them; when the queue is full, the
+ * games that finish block until there is room, so a slow consumer slows the games down instead
+ * of piling up results.
+ *
+ * Every game in progress has its own Connect4Game and pair of agents, made with AgentFactory
+ * objects and played with Match, so any existing agent runs unchanged. When a game ends, its
+ * board and agents are kept for a later game, which Match starts by calling newGame() on the
+ * agents, so a run never makes more pairs of agents than it has games in progress at once.
+ * The memory a game in progress holds is mostly its agents: a few kilobytes for agents without
+ * a table, 4 MB for each NegamaxAgent or IterativeDeepeningAgent with the default table, 16 MB
+ * for a LazySmpAgent, 64 MB for a SolverAgent, and the tree of an MctsAgent. So the default
+ * maxConcurrentGames comes from the heap: concurrencyFor() works out how many games of a given
+ * size fit in MEMORY_FRACTION of it, and the default assumes DEFAULT_BYTES_PER_GAME. A batch
+ * between agents with bigger tables should pass concurrencyFor() of their real cost.
+ *
+ * The games' seeds come from the simulation's seed in the order the games are started, so any
+ * game can be played again from the seed in its MatchResult, however the threads happened to
+ * run.
+ */
+public class Simulation
+{
+    public static final int DEFAULT_MAX_CONCURRENT_GAMES = 10000;  // games in progress at once, if memory allows
+    public static final long DEFAULT_BYTES_PER_GAME = 8L << 20;  // assumed for a game in progress: two 4 MB tables
+    public static final double MEMORY_FRACTION = 0.5;  // the part of the heap the games in progress may use by default
+    public static final int DEFAULT_RESULT_CAPACITY = 1024;  // finished games waiting to be collected
+    public static final int PLATFORM_THREADS_PER_PROCESSOR = 4;  // the pool size without virtual threads
+    public static final long QUEUE_WAIT_MILLIS = 100;  // how often a thread waiting on the results checks on the run
+
+    private int columnCount;            // the number of columns of the board
+    private int rowCount;               // the number of rows of the board
+    private int maxConcurrentGames;     // the most games that may be in progress at once
+    private int resultCapacity;         // the most finished games waiting to be collected
+    private boolean virtualThreads;     // whether the games run on virtual threads
+    private ExecutorService executor;   // runs the games
+    private long seed;                  // the seed every game's seed comes from
+    private long redWins;               // games red won in the last run
+    private long yellowWins;            // games yellow won in the last run
+    private long draws;                 // games drawn in the last run
+    private long stoppedGames;          // games stopped by an invalid move or a crash in the last run
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        int concurrent = args.length > 1 ? Integer.parseInt(args[1]) : concurrencyFor(DEFAULT_BYTES_PER_GAME);
+        Simulation simulation = new Simulation(7, 6, concurrent, DEFAULT_RESULT_CAPACITY);
+        if (args.length > 2)
+        {
+            simulation.setSeed(Long.parseLong(args[2]));
+        }
+        long start = System.nanoTime();
+        simulation.run(MyAgent::new, BrilliantAgent::new, games, null);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        simulation.shutdown();
+        System.out.println("Seed " + simulation.getSeed());
+        System.out.println(simulation);
+        System.out.println(String.format("%d games in %.1f s, %.0f games per second, on %s threads", games,
+            seconds, games / seconds, simulation.isUsingVirtualThreads() ? "virtual" : "platform"));
+    }
+
+    /**
+     * Creates a simulation with the default limits, running as many games at once as
+     * concurrencyFor(DEFAULT_BYTES_PER_GAME) allows.
+     *
+     * @param numCols the number of columns on the board.
+     * @param numRows the number of rows on the board.
+     */
+    public Simulation(int numCols, int numRows)
+    {
+        this(numCols, numRows, concurrencyFor(DEFAULT_BYTES_PER_GAME), DEFAULT_RESULT_CAPACITY);
+    }
+
+    /**
+     * Creates a simulation.
+     *
+     * @param numCols the number of columns on the board.
+     * @param numRows the number of rows on the board.
+     * @param maxConcurrentGames the most games in progress at once; at least 1.
+     * @param resultCapacity the most finished games waiting to be collected; at least 1.
+     */
+    public Simulation(int numCols, int numRows, int maxConcurrentGames, int resultCapacity)
+    {
+        this.columnCount = numCols;
+        this.rowCount = numRows;
+        this.maxConcurrentGames = Math.max(1, maxConcurrentGames);
+        this.resultCapacity = Math.max(1, resultCapacity);
+        this.seed = new SplittableRandom().nextLong();
+        executor = createVirtualThreadExecutor();
+        virtualThreads = executor != null;
+        if (executor == null)
+        {
+            int threads = Math.min(this.maxConcurrentGames,
+                PLATFORM_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "Simulation game");
+                thread.setDaemon(true);     // don't keep the program running after the batch
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Work out how many games can be in progress at once within MEMORY_FRACTION of the largest
+     * heap this Java will use, if each game holds a given amount of memory.
+     *
+     * @param bytesPerGame the memory one game in progress holds, mostly its two agents.
+     * @return the number of games, from 1 to DEFAULT_MAX_CONCURRENT_GAMES.
+     */
+    public static int concurrencyFor(long bytesPerGame)
+    {
+        long budget = (long) (Runtime.getRuntime().maxMemory() * MEMORY_FRACTION);
+        long games = budget / Math.max(1, bytesPerGame);
+        return (int) Math.max(1, Math.min(DEFAULT_MAX_CONCURRENT_GAMES, games));
+    }
+
+    /**
+     * Make an executor that starts a virtual thread for every task, if this Java has them.
+     * It is looked up by reflection so that the class still compiles and runs on Java 17.
+     *
+     * @return the executor, or null if virtual threads are not available.
+     */
+    private static ExecutorService createVirtualThreadExecutor()
+    {
+        try
+        {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Set the seed every game's seed comes from, to play a batch again.
+     *
+     * @param seed the simulation's seed.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the seed every game's seed comes from.
+     *
+     * @return the simulation's seed.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Play a batch of games and pass each result to a consumer as the games finish. Who moves
+     * first is decided by each game's seed. The call returns once every game is finished
+     * and has been passed on. Every game gives exactly one result, even if an agent throws an
+     * Error; such a game counts as stopped.
+     *
+     * If the consumer throws, or this thread is interrupted, the run is abandoned: no more
+     * games are started, and the games still running finish without queueing their results.
+     * The agents are released (see AgentFactory.release()) once the run is over.
+     *
+     * @param red makes the red agent for each game.
+     * @param yellow makes the yellow agent for each game.
+     * @param games the number of games to play.
+     * @param results called on this thread with the result of each game, in the order they
+     *                finish, or null to only count them.
+     * @throws InterruptedException if this thread is interrupted.
+     * @throws IllegalStateException if a game could not be started, for example because the
+     *                               simulation has been shut down.
+     */
+    public void run(AgentFactory red, AgentFactory yellow, long games, Consumer<MatchResult> results)
+        throws InterruptedException
+    {
+        redWins = 0;
+        yellowWins = 0;
+        draws = 0;
+        stoppedGames = 0;
+        Semaphore running = new Semaphore(maxConcurrentGames);
+        BlockingQueue<MatchResult> finished = new ArrayBlockingQueue<MatchResult>(resultCapacity);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        AtomicReference<Throwable> starterFailure = new AtomicReference<Throwable>();
+        Queue<Players> idle = new ConcurrentLinkedQueue<Players>();
+        // start the games from a thread of their own, so that this one is free to collect results
+        Thread starter = new Thread(() -> {
+            try
+            {
+                for (long i = 0; i < games && !abandoned.get(); i++)
+                {
+                    long gameSeed = seeds.nextLong();
+                    running.acquire();
+                    executor.execute(() -> playGame(red, yellow, gameSeed, idle, running, finished, abandoned));
+                }
+            }
+            catch (InterruptedException e)
+            {
+                return;     // the caller gave up on the batch
+            }
+            catch (Throwable e)
+            {
+                starterFailure.set(e);  // no more games will start; the caller finds out while waiting
+            }
+        }, "Simulation starter");
+        starter.setDaemon(true);
+        starter.start();
+        try
+        {
+            for (long i = 0; i < games; i++)
+            {
+                MatchResult result = finished.poll(QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                while (result == null)
+                {
+                    if (starterFailure.get() != null)
+                    {
+                        throw new IllegalStateException("A simulation game could not be started", starterFailure.get());
+                    }
+                    result = finished.poll(QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                count(result);
+                if (results != null)
+                {
+                    results.accept(result);
+                }
+            }
+        }
+        finally
+        {
+            // when all the results are in this changes nothing; otherwise it frees the running games
+            abandoned.set(true);
+            starter.interrupt();
+            releaseAll(idle);
+        }
+    }
+
+    /**
+     * Play one game on the current thread, with a board and agents left idle by an earlier game
+     * if there are any, and queue its result. Whatever goes wrong in the game, a result is
+     * queued, unless the run has been abandoned.
+     */
+    private void playGame(AgentFactory red, AgentFactory yellow, long gameSeed, Queue<Players> idle,
+                          Semaphore running, BlockingQueue<MatchResult> finished, AtomicBoolean abandoned)
+    {
+        MatchResult result;
+        Players players = idle.poll();
+        try
+        {
+            if (players == null)
+            {
+                players = new Players(red, yellow);
+            }
+            result = players.match.play(gameSeed);
+        }
+        catch (Throwable e)
+        {
+            // a factory that fails, or anything else Match doesn't catch, ends up here
+            result = new MatchResult("", "", gameSeed, true, 'N', "The game failed: " + e, "", 0, 0);
+        }
+        if (players != null && result.getError().isEmpty())
+        {
+            idle.add(players);
+            if (abandoned.get())
+            {
+                releaseAll(idle);   // the run may already have released the idle players
+            }
+        }
+        else if (players != null)
+        {
+            players.release();  // an agent that failed isn't trusted with another game
+        }
+        try
+        {
+            // wait here if the caller is behind, but not for a caller that has given up
+            boolean queued = false;
+            while (!queued && !abandoned.get())
+            {
+                queued = finished.offer(result, QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            running.release();
+        }
+    }
+
+    /**
+     * Release the agents of every idle board.
+     */
+    private static void releaseAll(Queue<Players> idle)
+    {
+        for (Players players = idle.poll(); players != null; players = idle.poll())
+        {
+            players.release();
+        }
+    }
+
+    /**
+     * Stop an agent's threads, if it was made, without letting a failure stop the result of
+     * its game from being queued.
+     */
+    private static void release(Agent agent)
+    {
+        try
+        {
+            if (agent != null)
+            {
+                AgentFactory.release(agent);
+            }
+        }
+        catch (Throwable e)
+        {
+            return;     // the game is over either way
+        }
+    }
+
+    /**
+     * Add a result to the totals.
+     */
+    private void count(MatchResult result)
+    {
+        if (!result.getError().isEmpty())
+        {
+            stoppedGames++;
+        }
+        else if (result.getWinner() == 'R')
+        {
+            redWins++;
+        }
+        else if (result.getWinner() == 'Y')
+        {
+            yellowWins++;
+        }
+        else
+        {
+            draws++;
+        }
+    }
+
+    /**
+     * Stops the threads that run the games. The simulation can't run after this.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Check whether the games run on virtual threads.
+     *
+     * @return true on Java 21 and later, false if the games run on a pool of platform threads.
+     */
+    public boolean isUsingVirtualThreads()
+    {
+        return virtualThreads;
+    }
+
+    /**
+     * Get the number of games red won in the last run.
+     *
+     * @return red's wins.
+     */
+    public long getRedWins()
+    {
+        return redWins;
+    }
+
+    /**
+     * Get the number of games yellow won in the last run.
+     *
+     * @return yellow's wins.
+     */
+    public long getYellowWins()
+    {
+        return yellowWins;
+    }
+
+    /**
+     * Get the number of games drawn in the last run.
+     *
+     * @return the draws.
+     */
+    public long getDraws()
+    {
+        return draws;
+    }
+
+    /**
+     * Get the number of games in the last run that were stopped by an invalid move or an
+     * agent that crashed.
+     *
+     * @return the stopped games.
+     */
+    public long getStoppedGameCount()
+    {
+        return stoppedGames;
+    }
+
+    /**
+     * A board and the two agents that play on it, kept from game to game.
+     */
+    private class Players
+    {
+        private Agent redPlayer;        // the agent playing the red tokens
+        private Agent yellowPlayer;     // the agent playing the yellow tokens
+        private Match match;            // plays the games between them
+
+        /**
+         * Make a new board and agents for it. If the second agent can't be made, the first is
+         * released before the failure is passed on.
+         */
+        private Players(AgentFactory red, AgentFactory yellow)
+        {
+            Connect4Game game = new Connect4Game(columnCount, rowCount);
+            redPlayer = red.create(game, true);
+            try
+            {
+                yellowPlayer = yellow.create(game, false);
+            }
+            catch (Throwable e)
+            {
+                Simulation.release(redPlayer);
+                throw e;
+            }
+            match = new Match(game, redPlayer, yellowPlayer);
+        }
+
+        /**
+         * Release both agents.
+         */
+        private void release()
+        {
+            Simulation.release(redPlayer);
+            Simulation.release(yellowPlayer);
+        }
+    }
+
+    /**
+     * Formats the totals of the last run.
+     *
+     * @return the wins, draws and stopped games.
+     */
+    public String toString()
+    {
+        return "Red wins " + redWins + ", yellow wins " + yellowWins + ", draws " + draws
+            + ", stopped " + stoppedGames;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * An agent that plays perfectly once the game is far enough along to solve quickly.
+ *
+ * From solveFromMove tokens on, every move is worked out exactly with a Connect4Solver: the
+ * agent takes the fastest win there is, holds a draw if it can't win, and otherwise puts off
+ * losing as long as possible. Before that it searches like a NegamaxAgent, or plays from an
+ * opening book if it has one; a book built with the solve option makes its opening moves
+ * perfect too.
+ */
+public class SolverAgent extends NegamaxAgent
+{
+    public static final int DEFAULT_SOLVE_FROM_MOVE = 12;   // on a 7x6 board, solves from here take under a second
+
+    protected int solveFromMove;        // positions with at least this many tokens are solved
+    protected Connect4Solver solver;    // kept between moves, so its table stays useful
+
+    /**
+     * Constructs a new agent that solves from DEFAULT_SOLVE_FROM_MOVE tokens on.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public SolverAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_SOLVE_FROM_MOVE);
+    }
+
+    /**
+     * Constructs a new agent that solves from a given number of tokens on.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param solveFromMove The number of tokens on the board from which every move is solved.
+     */
+    public SolverAgent(Connect4Game game, boolean iAmRed, int solveFromMove)
+    {
+        super(game, iAmRed);
+        this.solveFromMove = solveFromMove;
+        this.solver = new Connect4Solver();
+    }
+
+    /**
+     * Solves the position if it is far enough into the game, and searches it otherwise.
+     *
+     * @param position the position to play from; it is not changed.
+     * @return the column to play, or -1 if the board is full.
+     */
+    protected int chooseMove(Connect4Position position)
+    {
+        if (position.getMoveCount() >= solveFromMove)
+        {
+            return solver.bestMove(position);
+        }
+        return super.chooseMove(position);
+    }
+
+    /**
+     * Give the agent an opening book. A book of solved positions is also used by the solver.
+     *
+     * @param book the book, or null to always search or solve.
+     */
+    public void setOpeningBook(OpeningBook book)
+    {
+        super.setOpeningBook(book);
+        solver.setOpeningBook(book);
+    }
+
+    /**
+     * Get the solver this agent plays with.
+     *
+     * @return the solver.
+     */
+    public Connect4Solver getSolver()
+    {
+        return solver;
+    }
+
+    /**
+     * Returns the name of this agent.
+     *
+     * @return the agent's name
+     */
+    public String getName()
+    {
+        return "Solver Agent";
+    }
+}
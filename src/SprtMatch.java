@@ -0,0 +1,370 @@
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * An A/B match that plays only as many games as it takes to tell whether agent A is stronger
+ * than agent B, using a sequential probability ratio test (SPRT).
+ *
+ * The test weighs two hypotheses against each other: H0, that A is elo0 Elo points stronger
+ * than B, and H1, that it is elo1 points stronger (elo1 is larger). After every pair of games
+ * it updates the log-likelihood ratio (LLR) of H1 against H0 from the wins, draws and losses so
+ * far, taking the chance of a draw to be the same under both and estimating it from the games
+ * played. Once the LLR rises above log((1 - beta) / alpha) H1 is accepted, and once it falls
+ * below log(beta / (1 - alpha)) H0 is accepted, where alpha and beta are the chances of
+ * wrongly accepting H1 and H0. A clear difference is found in a few dozen games, and only a
+ * close call needs thousands; the match gives up with no decision after maxGames.
+ *
+ * The games are played in pairs from the same seed with the colors swapped, so both agents
+ * get the same openings and luck, which makes the test converge faster. Each agent is made once
+ * for each color and reused for the whole match; Match calls its newGame() before every game,
+ * so it forgets what it kept from the game before, and seeds it. Each game's seed is drawn
+ * from the match's seed, so a whole match or any game in it can be played again.
+ *
+ * Run it from the command line to test MyAgent against BrilliantAgent:
+ *
+ *     java SprtMatch [elo0 elo1 [maxGames [seed]]]
+ */
+public class SprtMatch
+{
+    public static final int H0 = -1;            // the match accepted H0: A is not elo1 stronger
+    public static final int UNDECIDED = 0;      // the match reached maxGames without a decision
+    public static final int H1 = 1;             // the match accepted H1: A is not only elo0 stronger
+    public static final int DEFAULT_MAX_GAMES = 20000;  // the most games to play if none is given
+    public static final int REPORT_INTERVAL = 100;  // games between progress lines
+
+    private int columnCount;            // the number of columns of the board
+    private int rowCount;               // the number of rows of the board
+    private AgentFactory agentA;        // makes the agent being tested
+    private AgentFactory agentB;        // makes the agent it is compared with
+    private double elo0;                // A's advantage under H0, in Elo points
+    private double elo1;                // A's advantage under H1, in Elo points
+    private double lowerBound;          // the LLR at which H0 is accepted
+    private double upperBound;          // the LLR at which H1 is accepted
+    private int maxGames = DEFAULT_MAX_GAMES;
+    private long seed = new SplittableRandom().nextLong();  // the seed every game's seed comes from
+    private PrintStream progress;       // where progress lines go, or null
+    private int wins;                   // games A won
+    private int draws;                  // games drawn
+    private int losses;                 // games A lost
+    private int stoppedGames;           // games stopped by an invalid move or a crash
+
+    public static void main(String[] args)
+    {
+        double elo0 = args.length > 1 ? Double.parseDouble(args[0]) : 0;
+        double elo1 = args.length > 1 ? Double.parseDouble(args[1]) : 50;
+        SprtMatch match = new SprtMatch(7, 6, MyAgent::new, BrilliantAgent::new, elo0, elo1, 0.05, 0.05);
+        if (args.length > 2)
+        {
+            match.setMaxGames(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3)
+        {
+            match.setSeed(Long.parseLong(args[3]));
+        }
+        match.setProgress(System.out);
+        System.out.println("Seed " + match.getSeed() + ", H0: elo " + elo0 + ", H1: elo " + elo1);
+        int decision = match.run();
+        System.out.println(match);
+        System.out.println(decision == H1 ? "H1 accepted: A is stronger by about elo1 or more."
+            : decision == H0 ? "H0 accepted: A is stronger by about elo0 or less."
+            : "No decision after " + match.getGameCount() + " games.");
+    }
+
+    /**
+     * Creates a match between two agents.
+     *
+     * @param numCols the number of columns on the board.
+     * @param numRows the number of rows on the board.
+     * @param agentA makes the agent being tested.
+     * @param agentB makes the agent it is compared with.
+     * @param elo0 A's advantage over B under H0, in Elo points.
+     * @param elo1 A's advantage over B under H1, in Elo points; larger than elo0.
+     * @param alpha the chance of accepting H1 when H0 is true, between 0 and 1.
+     * @param beta the chance of accepting H0 when H1 is true, between 0 and 1.
+     * @throws IllegalArgumentException if elo1 is not larger than elo0, or alpha or beta is
+     *                                  not between 0 and 1.
+     */
+    public SprtMatch(int numCols, int numRows, AgentFactory agentA, AgentFactory agentB, double elo0, double elo1,
+                     double alpha, double beta)
+    {
+        if (!(elo1 > elo0) || !(alpha > 0 && alpha < 1) || !(beta > 0 && beta < 1))
+        {
+            throw new IllegalArgumentException("Need elo0 < elo1 and 0 < alpha, beta < 1");
+        }
+        this.columnCount = numCols;
+        this.rowCount = numRows;
+        this.agentA = agentA;
+        this.agentB = agentB;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Set the most games to play before giving up without a decision.
+     *
+     * @param maxGames the game limit; at least 2.
+     */
+    public void setMaxGames(int maxGames)
+    {
+        this.maxGames = Math.max(2, maxGames);
+    }
+
+    /**
+     * Set the seed every game's seed comes from, to play a match again.
+     *
+     * @param seed the match's seed.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the seed every game's seed comes from.
+     *
+     * @return the match's seed.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Print a progress line every REPORT_INTERVAL games.
+     *
+     * @param progress where to print, or null for no progress lines.
+     */
+    public void setProgress(PrintStream progress)
+    {
+        this.progress = progress;
+    }
+
+    /**
+     * Play pairs of games until the test accepts one of the hypotheses or maxGames games have
+     * been played. Any results of an earlier run are replaced.
+     *
+     * @return H1, H0, or UNDECIDED.
+     */
+    public int run()
+    {
+        wins = 0;
+        draws = 0;
+        losses = 0;
+        stoppedGames = 0;
+        SplittableRandom seeds = new SplittableRandom(seed);
+        Connect4Game game = new Connect4Game(columnCount, rowCount);
+        Agent redA = agentA.create(game, true);
+        Agent yellowB = agentB.create(game, false);
+        Agent redB = agentB.create(game, true);
+        Agent yellowA = agentA.create(game, false);
+        Match aAsRed = new Match(game, redA, yellowB);
+        Match bAsRed = new Match(game, redB, yellowA);
+        try
+        {
+            while (getGameCount() + stoppedGames + 2 <= maxGames)
+            {
+                long pairSeed = seeds.nextLong();
+                count(aAsRed.play(pairSeed), 'R');
+                count(bAsRed.play(pairSeed), 'Y');
+                if (progress != null && (getGameCount() + stoppedGames) % REPORT_INTERVAL == 0)
+                {
+                    progress.println(this);
+                }
+                double llr = getLlr();
+                if (llr >= upperBound)
+                {
+                    return H1;
+                }
+                if (llr <= lowerBound)
+                {
+                    return H0;
+                }
+            }
+            return UNDECIDED;
+        }
+        finally
+        {
+            AgentFactory.release(redA);
+            AgentFactory.release(yellowB);
+            AgentFactory.release(redB);
+            AgentFactory.release(yellowA);
+        }
+    }
+
+    /**
+     * Add a game to the totals from A's point of view.
+     *
+     * @param colorA the color A played, 'R' or 'Y'.
+     */
+    private void count(MatchResult result, char colorA)
+    {
+        if (!result.getError().isEmpty())
+        {
+            stoppedGames++;
+        }
+        else if (result.isDraw())
+        {
+            draws++;
+        }
+        else if (result.getWinner() == colorA)
+        {
+            wins++;
+        }
+        else
+        {
+            losses++;
+        }
+    }
+
+    /**
+     * Turn an Elo difference into the expected score of the stronger side.
+     */
+    private static double expectedScore(double elo)
+    {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Get the log-likelihood ratio of H1 against H0 so far.
+     *
+     * @return the LLR; H1 is accepted at getUpperBound() and H0 at getLowerBound().
+     */
+    public double getLlr()
+    {
+        int n = getGameCount();
+        if (n == 0)
+        {
+            return 0;
+        }
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        // a score of s with draws taking up d of the games leaves s - d/2 for wins and 1 - s - d/2 for losses;
+        // both have to stay above 0 under either hypothesis
+        double halfDraws = Math.min((double) draws / n, 0.999 * 2 * Math.min(s0, 1 - s1)) / 2;
+        return wins * Math.log((s1 - halfDraws) / (s0 - halfDraws))
+            + losses * Math.log((1 - s1 - halfDraws) / (1 - s0 - halfDraws));
+    }
+
+    /**
+     * Get the LLR at which H0 is accepted.
+     *
+     * @return log(beta / (1 - alpha)).
+     */
+    public double getLowerBound()
+    {
+        return lowerBound;
+    }
+
+    /**
+     * Get the LLR at which H1 is accepted.
+     *
+     * @return log((1 - beta) / alpha).
+     */
+    public double getUpperBound()
+    {
+        return upperBound;
+    }
+
+    /**
+     * Estimate how many Elo points stronger A is than B from the games so far.
+     *
+     * @return the Elo difference, or infinity if A has won or lost every game.
+     */
+    public double getElo()
+    {
+        return eloOf((wins + draws / 2.0) / Math.max(1, getGameCount()));
+    }
+
+    /**
+     * Get the half-width of the 95% confidence interval of getElo().
+     *
+     * @return the margin of error in Elo points, or infinity if there is no estimate yet.
+     */
+    public double getEloError()
+    {
+        int n = getGameCount();
+        if (n == 0 || wins == n || losses == n)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        double score = (wins + draws / 2.0) / n;
+        double variance = (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+            + losses * score * score) / n;
+        double margin = 1.96 * Math.sqrt(variance / n);
+        return (eloOf(Math.min(1, score + margin)) - eloOf(Math.max(0, score - margin))) / 2;
+    }
+
+    /**
+     * Turn an expected score into an Elo difference.
+     */
+    private static double eloOf(double score)
+    {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * Get the number of games A won.
+     *
+     * @return A's wins.
+     */
+    public int getWins()
+    {
+        return wins;
+    }
+
+    /**
+     * Get the number of games drawn.
+     *
+     * @return the draws.
+     */
+    public int getDraws()
+    {
+        return draws;
+    }
+
+    /**
+     * Get the number of games A lost.
+     *
+     * @return A's losses.
+     */
+    public int getLosses()
+    {
+        return losses;
+    }
+
+    /**
+     * Get the number of games that counted towards the test.
+     *
+     * @return the games won, drawn and lost.
+     */
+    public int getGameCount()
+    {
+        return wins + draws + losses;
+    }
+
+    /**
+     * Get the number of games that were stopped by an invalid move or an agent that crashed.
+     * They don't count towards the test.
+     *
+     * @return the stopped games.
+     */
+    public int getStoppedGameCount()
+    {
+        return stoppedGames;
+    }
+
+    /**
+     * Formats the state of the test: the games so far, the Elo estimate, and the LLR with its
+     * bounds.
+     *
+     * @return a progress line.
+     */
+    public String toString()
+    {
+        return String.format("Games %d: +%d =%d -%d (%d stopped), Elo %.1f +/- %.1f, LLR %.2f [%.2f, %.2f]",
+            getGameCount(), wins, draws, losses, stoppedGames, getElo(), getEloError(), getLlr(), lowerBound,
+            upperBound);
+    }
+}
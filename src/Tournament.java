@@ -0,0 +1,361 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A round-robin tournament: every agent plays every other agent a number of games as red and
+ * the same number as yellow, and the results are collected in a cross-table.
+ *
+ * The games are split into tasks of up to GAMES_PER_TASK games between one pair of agents with
+ * fixed colors, and the tasks are run by a pool of worker threads with Match. Each task builds
+ * its own Connect4Game and its own agents from the entrants' AgentFactory objects, so nothing
+ * is shared between games running at the same time and the agents don't need to be thread-safe.
+ * The agents play all of the task's games, so their tables and threads are only set up once
+ * per task; Match calls their newGame() before every game, so they forget what they kept from
+ * the game before, and seeds them, so no game depends on the ones before it.
+ *
+ * Every game's seed comes from the tournament's seed, in an order that doesn't depend on how
+ * the threads happen to run, so a tournament run again with the same seed gives the same
+ * results, apart from agents that search until a time limit. A single game can be played
+ * again from its seed with Match.play().
+ *
+ * Run it from the command line to play every built-in agent against the others:
+ *
+ *     java Tournament [games [threads [seed]]]
+ */
+public class Tournament
+{
+    public static final int DEFAULT_GAMES = 100;    // games per pairing and color if none is given
+    public static final int GAMES_PER_TASK = 10;    // the games a worker plays before taking the next task
+
+    private int columnCount;            // the number of columns of the board
+    private int rowCount;               // the number of rows of the board
+    private int games;                  // the games each pair plays with each color
+    private int threadCount;            // the number of games played at once
+    private long seed;                  // the seed every game's seed comes from
+    private ArrayList<String> names = new ArrayList<String>();
+    private ArrayList<AgentFactory> factories = new ArrayList<AgentFactory>();
+    private int[][] wins;               // wins[i][j] is the number of games entrant i won against entrant j
+    private int[][] draws;              // draws[i][j] is the number of games between i and j that were drawn
+    private int stoppedGames;           // games stopped by an invalid move or a crash
+    private String firstError = "";     // why the first of those was stopped
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Tournament tournament = new Tournament(7, 6, games, threads);
+        if (args.length > 2)
+        {
+            tournament.setSeed(Long.parseLong(args[2]));
+        }
+        tournament.addEntrant(RandomAgent::new);
+        tournament.addEntrant(BeginnerAgent::new);
+        tournament.addEntrant(IntermediateAgent::new);
+        tournament.addEntrant(AdvancedAgent::new);
+        tournament.addEntrant(BrilliantAgent::new);
+        tournament.addEntrant(MyAgent::new);
+        long start = System.nanoTime();
+        tournament.run();
+        System.out.println("Seed " + tournament.getSeed());
+        System.out.print(tournament);
+        System.out.println("Played in " + (System.nanoTime() - start) / 1000000L + " ms on " + threads + " threads");
+    }
+
+    /**
+     * Creates a tournament with no entrants yet and a random seed.
+     *
+     * @param numCols the number of columns on the board.
+     * @param numRows the number of rows on the board.
+     * @param games the number of games each pair of agents plays with each color.
+     * @param threadCount the number of games to play at once; at least 1.
+     */
+    public Tournament(int numCols, int numRows, int games, int threadCount)
+    {
+        this.columnCount = numCols;
+        this.rowCount = numRows;
+        this.games = games;
+        this.threadCount = Math.max(1, threadCount);
+        this.seed = new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Set the seed every game's seed comes from, to play a tournament again.
+     *
+     * @param seed the tournament's seed.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the seed every game's seed comes from.
+     *
+     * @return the tournament's seed.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Add an agent to the tournament, named after what its getName() returns.
+     *
+     * @param factory makes the agent for each game.
+     */
+    public void addEntrant(AgentFactory factory)
+    {
+        Agent agent = factory.create(new Connect4Game(columnCount, rowCount), true);
+        String name;
+        try
+        {
+            name = agent.getName();
+        }
+        finally
+        {
+            AgentFactory.release(agent);    // it was only made for its name
+        }
+        addEntrant(name, factory);
+    }
+
+    /**
+     * Add an agent to the tournament under a given name, for example to tell apart two
+     * entrants that are the same agent with different options.
+     *
+     * @param name the name to show in the cross-table.
+     * @param factory makes the agent for each game.
+     */
+    public void addEntrant(String name, AgentFactory factory)
+    {
+        names.add(name);
+        factories.add(factory);
+    }
+
+    /**
+     * Play every game of the tournament, using all of the worker threads, and wait until they
+     * are finished. Any results of an earlier run are replaced.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void run() throws InterruptedException
+    {
+        int count = names.size();
+        wins = new int[count][count];
+        draws = new int[count][count];
+        stoppedGames = 0;
+        firstError = "";
+        List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int red = 0; red < count; red++)
+        {
+            for (int yellow = 0; yellow < count; yellow++)
+            {
+                for (int played = 0; red != yellow && played < games; played += GAMES_PER_TASK)
+                {
+                    tasks.add(createTask(red, yellow, Math.min(GAMES_PER_TASK, games - played), seeds.nextLong()));
+                }
+            }
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "Tournament worker");
+            thread.setDaemon(true);     // don't keep the program running if the caller gives up
+            return thread;
+        });
+        try
+        {
+            for (Future<int[]> future : workers.invokeAll(tasks))
+            {
+                addResults(future.get());
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("A tournament game failed", e.getCause());
+        }
+        finally
+        {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Make the task of playing some games between two entrants.
+     *
+     * @param taskSeed the seed the seeds of the task's games come from.
+     * @return a task returning {red, yellow, red wins, yellow wins, draws, stopped games}.
+     */
+    private Callable<int[]> createTask(int red, int yellow, int taskGames, long taskSeed)
+    {
+        return () -> {
+            Connect4Game game = new Connect4Game(columnCount, rowCount);
+            Agent redPlayer = factories.get(red).create(game, true);
+            Agent yellowPlayer = factories.get(yellow).create(game, false);
+            Match match = new Match(game, redPlayer, yellowPlayer, taskSeed);
+            int[] results = {red, yellow, 0, 0, 0, 0};
+            try
+            {
+                for (int i = 0; i < taskGames; i++)
+                {
+                    MatchResult result = match.play();
+                    if (!result.getError().isEmpty())
+                    {
+                        results[5]++;
+                        synchronized (this)
+                        {
+                            if (firstError.isEmpty())
+                            {
+                                firstError = result.getError() + " (seed " + result.getSeed() + ")";
+                            }
+                        }
+                    }
+                    else
+                    {
+                        results[result.getWinner() == 'R' ? 2 : result.getWinner() == 'Y' ? 3 : 4]++;
+                    }
+                }
+            }
+            finally
+            {
+                AgentFactory.release(redPlayer);
+                AgentFactory.release(yellowPlayer);
+            }
+            return results;
+        };
+    }
+
+    /**
+     * Add the results of one task to the cross-table.
+     */
+    private void addResults(int[] results)
+    {
+        int red = results[0];
+        int yellow = results[1];
+        wins[red][yellow] += results[2];
+        wins[yellow][red] += results[3];
+        draws[red][yellow] += results[4];
+        draws[yellow][red] += results[4];
+        stoppedGames += results[5];
+    }
+
+    /**
+     * Get the number of agents in the tournament.
+     *
+     * @return the number of entrants.
+     */
+    public int getEntrantCount()
+    {
+        return names.size();
+    }
+
+    /**
+     * Get the name of an entrant.
+     *
+     * @param entrant the entrant's number, in the order they were added from 0.
+     * @return the name shown in the cross-table.
+     */
+    public String getName(int entrant)
+    {
+        return names.get(entrant);
+    }
+
+    /**
+     * Get the number of games one entrant won against another, with either color.
+     *
+     * @param entrant the winner's number.
+     * @param opponent the loser's number.
+     * @return the number of wins.
+     */
+    public int getWins(int entrant, int opponent)
+    {
+        return wins[entrant][opponent];
+    }
+
+    /**
+     * Get the number of drawn games between two entrants, with either color.
+     *
+     * @param entrant one entrant's number.
+     * @param opponent the other entrant's number.
+     * @return the number of draws.
+     */
+    public int getDraws(int entrant, int opponent)
+    {
+        return draws[entrant][opponent];
+    }
+
+    /**
+     * Get an entrant's score over the whole tournament: a point for each win and half a point
+     * for each draw.
+     *
+     * @param entrant the entrant's number.
+     * @return the score.
+     */
+    public double getScore(int entrant)
+    {
+        double score = 0;
+        for (int opponent = 0; opponent < names.size(); opponent++)
+        {
+            score += wins[entrant][opponent] + draws[entrant][opponent] / 2.0;
+        }
+        return score;
+    }
+
+    /**
+     * Get the number of games that were stopped by an invalid move or an agent that crashed.
+     * They don't count in the cross-table.
+     *
+     * @return the number of stopped games.
+     */
+    public int getStoppedGameCount()
+    {
+        return stoppedGames;
+    }
+
+    /**
+     * Formats the cross-table: a row for each entrant, with its wins, losses and draws against
+     * every other entrant, and its score over the whole tournament.
+     *
+     * @return the cross-table, one line per entrant.
+     */
+    public String toString()
+    {
+        int width = 0;
+        for (String name : names)
+        {
+            width = Math.max(width, name.length());
+        }
+        StringBuilder table = new StringBuilder(String.format("%" + (width + 4) + "s", ""));
+        for (int opponent = 0; opponent < names.size(); opponent++)
+        {
+            table.append(String.format("%12d", opponent + 1));
+        }
+        table.append(String.format("%10s %6s%n", "score", "%"));
+        int maxScore = 2 * games * (names.size() - 1);
+        for (int entrant = 0; entrant < names.size(); entrant++)
+        {
+            table.append(String.format("%2d  %-" + width + "s", entrant + 1, names.get(entrant)));
+            for (int opponent = 0; opponent < names.size(); opponent++)
+            {
+                if (opponent == entrant)
+                {
+                    table.append(String.format("%12s", "-"));
+                    continue;
+                }
+                table.append(String.format("%12s", wins[entrant][opponent] + "-" + wins[opponent][entrant]
+                    + "-" + draws[entrant][opponent]));
+            }
+            double score = getScore(entrant);
+            table.append(String.format("%10.1f %6.1f%n", score, maxScore == 0 ? 0 : 100 * score / maxScore));
+        }
+        if (stoppedGames > 0)
+        {
+            table.append(stoppedGames + " games were stopped, the first because: " + firstError + "\n");
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,261 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of search results, keyed by position hash.
+ *
+ * All of the memory is allocated up front as two arrays of longs, one for keys and one for
+ * packed entries, so probing and storing never allocate. Each entry holds a score, whether
+ * that score is exact or only a bound, the depth it was searched to, the best move found, and
+ * the search generation it was stored in.
+ *
+ * Replacement policy: a slot is overwritten when it is empty, holds the same position, was
+ * stored during an earlier generation (an earlier move of the game), or was searched no deeper
+ * than the new result. Otherwise the deeper, more recent result is kept.
+ *
+ * The table counts probes, hits and stores so it can be sized for a machine.
+ *
+ * The table can be shared by searches running on several threads without any locking. Each
+ * slot stores the key XORed with the entry, so an entry that is torn by two threads writing at
+ * once no longer matches its key and simply reads as a miss.
+ */
+public class TranspositionTable
+{
+    public static final int EXACT = 1;  // the score is the exact value of the position
+    public static final int LOWER = 2;  // the real value is at least the score
+    public static final int UPPER = 3;  // the real value is at most the score
+
+    private long[] keys;        // the key of the position stored in each slot, XORed with its entry
+    private long[] entries;     // the packed entry stored in each slot; 0 if the slot is empty
+    private int indexMask;      // the number of slots minus one
+    private volatile int generation;  // counts searches, so old results can be replaced first
+
+    private LongAdder probes = new LongAdder();         // the number of calls to probe()
+    private LongAdder hits = new LongAdder();           // the number of probes that found their position
+    private LongAdder stores = new LongAdder();         // the number of entries written
+    private LongAdder replacements = new LongAdder();   // the number of writes that evicted a different position
+
+    /**
+     * Creates a table with room for a given number of entries. Each entry takes 16 bytes.
+     *
+     * @param minEntries the least number of entries; it is rounded up to a power of two.
+     */
+    public TranspositionTable(int minEntries)
+    {
+        int size = Integer.highestOneBit(Math.max(1, minEntries - 1)) << 1;
+        if (size <= 0)
+        {
+            throw new IllegalArgumentException("Too many entries: " + minEntries);
+        }
+        keys = new long[size];
+        entries = new long[size];
+        indexMask = size - 1;
+    }
+
+    /**
+     * Get the number of entries the table can hold.
+     *
+     * @return the capacity of the table.
+     */
+    public int getCapacity()
+    {
+        return keys.length;
+    }
+
+    /**
+     * Start a new search. Entries from earlier searches stay usable, but are the first to be
+     * replaced.
+     */
+    public void newSearch()
+    {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Remove every entry and reset the statistics.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        replacements.reset();
+    }
+
+    /**
+     * Look up a position.
+     *
+     * @param key the hash of the position.
+     * @return the packed entry for the position, or 0 if it is not in the table.
+     */
+    public long probe(long key)
+    {
+        probes.increment();
+        int index = (int) key & indexMask;
+        long entry = entries[index];
+        if (entry != 0 && (keys[index] ^ entry) == key)
+        {
+            hits.increment();
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Store the result of searching a position, if the replacement policy allows it.
+     *
+     * @param key the hash of the position.
+     * @param score the score found.
+     * @param bound EXACT, LOWER or UPPER.
+     * @param depth the depth searched, from 0 to 255.
+     * @param move the best move found, or -1 if there is none.
+     */
+    public void store(long key, int score, int bound, int depth, int move)
+    {
+        int index = (int) key & indexMask;
+        int currentGeneration = generation;
+        long old = entries[index];
+        boolean samePosition = (keys[index] ^ old) == key;
+        if (old != 0 && !samePosition && generation(old) == currentGeneration && depth(old) > depth)
+        {
+            return;
+        }
+        if (old != 0 && !samePosition)
+        {
+            replacements.increment();
+        }
+        stores.increment();
+        long entry = pack(score, bound, depth, move, currentGeneration);
+        keys[index] = key ^ entry;
+        entries[index] = entry;
+    }
+
+    /**
+     * Get the score from a packed entry.
+     *
+     * @param entry an entry returned by probe().
+     * @return the stored score.
+     */
+    public static int score(long entry)
+    {
+        return (int) (entry >> 32);
+    }
+
+    /**
+     * Get the kind of bound from a packed entry.
+     *
+     * @param entry an entry returned by probe().
+     * @return EXACT, LOWER or UPPER.
+     */
+    public static int bound(long entry)
+    {
+        return (int) entry & 0x3;
+    }
+
+    /**
+     * Get the search depth from a packed entry.
+     *
+     * @param entry an entry returned by probe().
+     * @return the depth the stored score was searched to.
+     */
+    public static int depth(long entry)
+    {
+        return (int) (entry >>> 2) & 0xFF;
+    }
+
+    /**
+     * Get the best move from a packed entry.
+     *
+     * @param entry an entry returned by probe().
+     * @return the best column found, or -1 if there was none.
+     */
+    public static int move(long entry)
+    {
+        return ((int) (entry >>> 10) & 0xFF) - 1;
+    }
+
+    /**
+     * Get the generation from a packed entry.
+     *
+     * @param entry an entry returned by probe().
+     * @return the value of the generation counter when the entry was stored.
+     */
+    private static int generation(long entry)
+    {
+        return (int) (entry >>> 18) & 0xFF;
+    }
+
+    /**
+     * Pack the parts of an entry into a long. The bound is never 0, so neither is the result.
+     */
+    private static long pack(int score, int bound, int depth, int move, int generation)
+    {
+        return ((long) score << 32) | ((long) generation << 18) | ((long) (move + 1) << 10)
+            | ((long) Math.min(depth, 0xFF) << 2) | bound;
+    }
+
+    /**
+     * Get the number of lookups made.
+     *
+     * @return the number of calls to probe().
+     */
+    public long getProbeCount()
+    {
+        return probes.sum();
+    }
+
+    /**
+     * Get the number of lookups that found their position.
+     *
+     * @return the number of hits.
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of entries written.
+     *
+     * @return the number of stores that were not refused by the replacement policy.
+     */
+    public long getStoreCount()
+    {
+        return stores.sum();
+    }
+
+    /**
+     * Get the number of writes that evicted a different position.
+     *
+     * @return the number of replacements.
+     */
+    public long getReplacementCount()
+    {
+        return replacements.sum();
+    }
+
+    /**
+     * Get the fraction of lookups that found their position.
+     *
+     * @return the hit rate, from 0 to 1.
+     */
+    public double getHitRate()
+    {
+        long probeCount = probes.sum();
+        return probeCount == 0 ? 0 : (double) hits.sum() / probeCount;
+    }
+
+    /**
+     * Describe the size and statistics of the table.
+     *
+     * @return a one-line summary.
+     */
+    public String toString()
+    {
+        return "TranspositionTable[" + keys.length + " entries, " + getProbeCount() + " probes, "
+            + String.format("%.1f", 100 * getHitRate()) + "% hits, " + getStoreCount() + " stores, "
+            + getReplacementCount() + " replacements]";
+    }
+}
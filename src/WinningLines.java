@@ -0,0 +1,199 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every way to make four in a row on a board of one size, worked out once and shared.
+ *
+ * Each line is four slots in a row, numbered from 0. For each line the index keeps a bitboard
+ * of its slots, in the same layout as Connect4Position, and the slots themselves. For each slot
+ * it keeps the lines that pass through it. That turns questions like "would this slot complete
+ * a line?" into a few lookups instead of a scan of the neighbouring slots.
+ *
+ * Slots are numbered column * rows + row, with row 0 at the top, the same as the move journal
+ * in Connect4Game. The lines are numbered in the order gameWon() has always looked for them:
+ * by column, then by row, and from each starting slot downwards, to the right, down to the
+ * right and down to the left.
+ */
+public class WinningLines
+{
+    private static final ConcurrentHashMap<Integer, WinningLines> CACHE = new ConcurrentHashMap<>();
+
+    private final int columnCount;      // the number of columns on the board
+    private final int rowCount;         // the number of rows on the board
+    private final long[] lineMasks;     // the bitboard of the four slots of each line
+    private final int[][] lineSlots;    // the four slots of each line, as column * rows + row
+    private final int[][] linesThrough; // the lines through each slot
+
+    /**
+     * Get the index for a board size, building it the first time that size is asked for.
+     *
+     * @param numCols the number of columns on the board.
+     * @param numRows the number of rows on the board.
+     * @return the shared index for that size.
+     * @throws IllegalArgumentException if the board is too big for a Connect4Position.
+     */
+    public static WinningLines forSize(int numCols, int numRows)
+    {
+        Integer size = numCols * 65 + numRows;     // the board can't have more than 64 slots
+        WinningLines lines = CACHE.get(size);
+        if (lines == null)
+        {
+            lines = new WinningLines(numCols, numRows);
+            WinningLines raced = CACHE.putIfAbsent(size, lines);
+            if (raced != null)
+            {
+                lines = raced;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Build the index for a board size. Use forSize() instead, so that it is only built once.
+     */
+    private WinningLines(int numCols, int numRows)
+    {
+        Connect4Position layout = new Connect4Position(numCols, numRows);
+        columnCount = numCols;
+        rowCount = numRows;
+        int[][] steps = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };   // row step, column step
+
+        ArrayList<int[]> found = new ArrayList<int[]>();
+        for (int column = 0; column < numCols; column++)
+        {
+            for (int row = 0; row < numRows; row++)
+            {
+                for (int[] step : steps)
+                {
+                    int lastRow = row + 3 * step[0];
+                    int lastColumn = column + 3 * step[1];
+                    if (lastRow < numRows && lastColumn >= 0 && lastColumn < numCols)
+                    {
+                        int[] slots = new int[4];
+                        for (int k = 0; k < 4; k++)
+                        {
+                            slots[k] = (column + k * step[1]) * numRows + row + k * step[0];
+                        }
+                        found.add(slots);
+                    }
+                }
+            }
+        }
+        int count = found.size();
+        lineSlots = found.toArray(new int[count][]);
+        lineMasks = new long[count];
+        for (int line = 0; line < count; line++)
+        {
+            for (int slot : lineSlots[line])
+            {
+                lineMasks[line] |= layout.slotBit(slot / numRows, slot % numRows);
+            }
+        }
+
+        int[] through = new int[numCols * numRows];
+        for (int[] slots : lineSlots)
+        {
+            for (int slot : slots)
+            {
+                through[slot]++;
+            }
+        }
+        linesThrough = new int[numCols * numRows][];
+        for (int slot = 0; slot < through.length; slot++)
+        {
+            linesThrough[slot] = new int[through[slot]];
+            through[slot] = 0;
+        }
+        for (int line = 0; line < count; line++)
+        {
+            for (int slot : lineSlots[line])
+            {
+                linesThrough[slot][through[slot]++] = line;
+            }
+        }
+    }
+
+    /**
+     * Get the number of columns on the board this index is for.
+     *
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * Get the number of rows on the board this index is for.
+     *
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Get the number of different lines of four on the board.
+     *
+     * @return the number of lines.
+     */
+    public int getLineCount()
+    {
+        return lineMasks.length;
+    }
+
+    /**
+     * Get the slots of a line as a bitboard.
+     *
+     * @param line the line number.
+     * @return a bitboard with the four slots of the line set.
+     */
+    public long getLineMask(int line)
+    {
+        return lineMasks[line];
+    }
+
+    /**
+     * Get the slots of a line. The array is shared, so it must not be changed.
+     *
+     * @param line the line number.
+     * @return the four slots of the line, as column * rows + row.
+     */
+    public int[] getLineSlots(int line)
+    {
+        return lineSlots[line];
+    }
+
+    /**
+     * Get the lines that pass through a slot. The array is shared, so it must not be changed.
+     *
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @return the numbers of the lines through the slot.
+     */
+    public int[] getLinesThrough(int column, int row)
+    {
+        return linesThrough[column * rowCount + row];
+    }
+
+    /**
+     * Check whether a token in an empty slot would give a player four in a row.
+     *
+     * @param tokens the bitboard of the player's tokens.
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @return true if some line through the slot already holds three of the player's tokens.
+     */
+    public boolean completesLine(long tokens, int column, int row)
+    {
+        for (int line : linesThrough[column * rowCount + row])
+        {
+            if (Long.bitCount(lineMasks[line] & tokens) == 3)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An agent that looks a fixed number of moves ahead with a parallel YoungBrothersSearch.
+ *
+ * It plays exactly the moves a single-threaded NegamaxAgent without a table would, but spreads
+ * the work over a ForkJoinPool. Because the search is deterministic, its moves and node counts
+ * can be compared from run to run.
+ */
+public class YoungBrothersAgent extends NegamaxAgent implements Shutdownable
+{
+    protected ForkJoinPool pool;    // the threads the search runs on
+    protected int splitDepth;       // nodes this close to the leaves are searched serially
+    protected long lastNodeCount;   // positions visited by the last move, not counting cancelled work
+
+    /**
+     * Constructs a new agent that searches DEFAULT_DEPTH moves ahead on every processor.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public YoungBrothersAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_DEPTH, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new agent with a given depth and number of threads.
+     *
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param depth The number of moves to look ahead; at least 1.
+     * @param parallelism The number of threads to search with; at least 1.
+     */
+    public YoungBrothersAgent(Connect4Game game, boolean iAmRed, int depth, int parallelism)
+    {
+        super(game, iAmRed, depth, null);
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.splitDepth = YoungBrothersSearch.DEFAULT_SPLIT_DEPTH;
+    }
+
+    /**
+     * Chooses the column to play with a parallel search.
+     *
+     * @param position the position to search; it is not changed.
+     * @return the column to play, or -1 if the board is full.
+     */
+    protected int chooseMove(Connect4Position position)
+    {
+        YoungBrothersSearch search = new YoungBrothersSearch(position, pool, splitDepth);
+        search.setPatternEvaluation(patternEvaluation);
+        int move = search.search(depth);
+        lastNodeCount = search.getNodeCount();
+        return move;
+    }
+
+    /**
+     * Get the number of positions searched for the last move. This is the same on every run.
+     *
+     * @return the node count of the last search, not counting cancelled work.
+     */
+    public long getLastNodeCount()
+    {
+        return lastNodeCount;
+    }
+
+    /**
+     * Stops the search threads. The agent can't move after this.
+     */
+    public void shutdown()
+    {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Returns the name of this agent.
+     *
+     * @return the agent's name
+     */
+    public String getName()
+    {
+        return "Young Brothers Agent (depth " + depth + ", " + pool.getParallelism() + " threads)";
+    }
+}
@@ -0,0 +1,276 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A parallel negamax alpha-beta search using the Young Brothers Wait Concept on a ForkJoinPool.
+ *
+ * At every node far enough from the leaves, the first move (the "eldest brother") is searched
+ * on its own to get a good bound. Only then are the remaining moves (the "young brothers")
+ * forked as separate tasks, all with that bound. Their results are collected in column order,
+ * and as soon as one of them causes a cutoff the rest are cancelled. Nodes close to the leaves
+ * are searched serially with Connect4Search, since splitting them would cost more than it saves;
+ * a serial search notices that its task was cancelled every 1024 positions and gives up.
+ *
+ * The search is deterministic. Each task's window is fixed when it is forked, and no table is
+ * shared between tasks, so every task returns the same score and node count on every run. A
+ * cancelled task may have done some work before it noticed; that work is reported separately
+ * by getWastedNodeCount() and left out of getNodeCount(). That way the best move, its score and
+ * the node count can be checked in regression tests no matter how the threads were scheduled.
+ */
+public class YoungBrothersSearch
+{
+    public static final int DEFAULT_SPLIT_DEPTH = 5;  // nodes this close to the leaves are searched serially
+
+    private Connect4Position position;  // the root position, never changed
+    private ForkJoinPool pool;          // the threads that run the tasks
+    private int splitDepth;             // the remaining depth at or below which nodes are not split
+    private int[] columnOrder;          // columns ordered from the center outwards
+    private boolean patternEvaluation;  // whether leaves are scored with a PatternEvaluator
+    private int bestScore;              // the score of the move returned by the last search
+    private long nodeCount;             // positions visited by tasks whose results were used
+    private long wastedNodeCount;       // positions visited by tasks that were cancelled
+
+    /**
+     * Creates a search over a copy of the given position.
+     *
+     * @param position the position to search from. It is copied, so it is not changed.
+     * @param pool the pool to run the search on.
+     * @param splitDepth nodes with this many moves or fewer left to search are not split.
+     */
+    public YoungBrothersSearch(Connect4Position position, ForkJoinPool pool, int splitDepth)
+    {
+        this.position = new Connect4Position(position);
+        this.pool = pool;
+        this.splitDepth = Math.max(0, splitDepth);
+        this.columnOrder = new int[position.getColumnCount()];
+        for (int i = 0; i < columnOrder.length; i++)
+        {
+            columnOrder[i] = columnOrder.length / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        }
+    }
+
+    /**
+     * Choose whether leaves are scored with a PatternEvaluator, as with
+     * Connect4Search.setPatternEvaluation().
+     *
+     * @param enabled true to use the pattern evaluation, false to count threats.
+     */
+    public void setPatternEvaluation(boolean enabled)
+    {
+        patternEvaluation = enabled;
+    }
+
+    /**
+     * Find the best move for the player to move, looking a fixed number of moves ahead. The
+     * result is the same as Connect4Search.search() without a table and with the same
+     * evaluation would give.
+     *
+     * @param depth the number of moves to look ahead; at least 1.
+     * @return the best column to play, or -1 if the board is full.
+     */
+    public int search(int depth)
+    {
+        for (int i = 0; i < columnOrder.length; i++)
+        {
+            if (position.canPlay(columnOrder[i]) && position.isWinningMove(columnOrder[i]))
+            {
+                bestScore = Connect4Search.WIN_SCORE - position.getMoveCount() - 1;
+                nodeCount = 1;
+                wastedNodeCount = 0;
+                return columnOrder[i];
+            }
+        }
+        NodeTask root = new NodeTask(position, depth, -Connect4Search.INFINITY, Connect4Search.INFINITY, null, true);
+        bestScore = pool.invoke(root);
+        nodeCount = root.nodes;
+        wastedNodeCount = root.wastedNodes;
+        return root.bestMove;
+    }
+
+    /**
+     * Get the score of the move returned by the last call to search().
+     *
+     * @return the score of the best move, from the point of view of the player to move.
+     */
+    public int getBestScore()
+    {
+        return bestScore;
+    }
+
+    /**
+     * Get the number of positions the last search visited, not counting cancelled work. This
+     * is the same on every run.
+     *
+     * @return the number of positions visited by tasks whose results were used.
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Get the number of positions the last search visited in tasks that were cancelled. This
+     * depends on how the threads were scheduled.
+     *
+     * @return the number of positions whose results were thrown away.
+     */
+    public long getWastedNodeCount()
+    {
+        return wastedNodeCount;
+    }
+
+    /**
+     * The search of one node of the tree, run as a fork/join task.
+     */
+    @SuppressWarnings("serial")     // tasks are never serialized
+    private class NodeTask extends RecursiveTask<Integer>
+    {
+        private Connect4Position position;  // the position at this node, owned by the task
+        private int depth;                  // the number of moves left to look ahead
+        private int alpha;                  // the lower end of the window
+        private int beta;                   // the upper end of the window
+        private NodeTask parent;            // the task that forked this one, or null at the root
+        private boolean root;               // whether this is the root, which records its best move
+        private volatile boolean cancelled; // set when a brother's cutoff makes this result useless
+        private int bestMove = -1;          // the best move found
+        private long nodes;                 // positions visited, not counting cancelled children
+        private long wastedNodes;           // positions visited by cancelled children
+
+        NodeTask(Connect4Position position, int depth, int alpha, int beta, NodeTask parent, boolean root)
+        {
+            this.position = position;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.parent = parent;
+            this.root = root;
+        }
+
+        /**
+         * Check whether this task or any task above it has been cancelled.
+         */
+        private boolean isAborted()
+        {
+            for (NodeTask task = this; task != null; task = task.parent)
+            {
+                if (task.cancelled)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Create the task for the position after playing a column.
+         */
+        private NodeTask child(int column, int alpha)
+        {
+            Connect4Position next = new Connect4Position(position);
+            next.play(column);
+            return new NodeTask(next, depth - 1, -beta, -alpha, this, false);
+        }
+
+        protected Integer compute()
+        {
+            if (isAborted())
+            {
+                return 0;
+            }
+            if (!root && depth <= splitDepth)
+            {
+                Connect4Search serial = new Connect4Search(position)
+                {
+                    protected boolean outOfTime()
+                    {
+                        // there is no deadline, but a cancelled subtree isn't worth finishing
+                        if (!aborted && (nodeCount & 1023) == 0 && isAborted())
+                        {
+                            aborted = true;
+                        }
+                        return aborted;
+                    }
+                };
+                serial.setPatternEvaluation(patternEvaluation);
+                int score = serial.negamax(depth, alpha, beta);
+                nodes = serial.getNodeCount();
+                return score;
+            }
+            nodes = 1;
+            int moves = position.getMoveCount();
+            if (moves == position.getColumnCount() * position.getRowCount())
+            {
+                return 0;
+            }
+            if (!root && position.canWinNext())
+            {
+                return Connect4Search.WIN_SCORE - moves - 1;
+            }
+
+            // the eldest brother is searched first, on this thread
+            int first = 0;
+            while (!position.canPlay(columnOrder[first]))
+            {
+                first++;
+            }
+            NodeTask eldest = child(columnOrder[first], alpha);
+            int best = -eldest.compute();
+            nodes += eldest.nodes;
+            wastedNodes += eldest.wastedNodes;
+            bestMove = columnOrder[first];
+            int a = Math.max(alpha, best);
+            if (a >= beta)
+            {
+                return best;
+            }
+
+            // then the young brothers are forked, all with the eldest brother's bound
+            NodeTask[] brothers = new NodeTask[columnOrder.length];
+            for (int i = first + 1; i < columnOrder.length; i++)
+            {
+                if (position.canPlay(columnOrder[i]))
+                {
+                    brothers[i] = child(columnOrder[i], a);
+                    brothers[i].fork();
+                }
+            }
+            boolean cutoff = false;
+            for (int i = first + 1; i < columnOrder.length; i++)
+            {
+                if (brothers[i] == null)
+                {
+                    continue;
+                }
+                if (cutoff)
+                {
+                    brothers[i].cancelled = true;
+                }
+                int score = -brothers[i].join();
+                if (cutoff)
+                {
+                    wastedNodes += brothers[i].nodes + brothers[i].wastedNodes;
+                    continue;
+                }
+                nodes += brothers[i].nodes;
+                wastedNodes += brothers[i].wastedNodes;
+                if (score > best)
+                {
+                    best = score;
+                    bestMove = columnOrder[i];
+                    if (score >= beta)
+                    {
+                        cutoff = true;
+                        for (int j = i + 1; j < columnOrder.length; j++)
+                        {
+                            if (brothers[j] != null)
+                            {
+                                brothers[j].cancelled = true;
+                            }
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+    }
+}